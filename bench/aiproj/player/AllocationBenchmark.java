@@ -0,0 +1,52 @@
+package aiproj.player;
+
+import java.lang.management.ManagementFactory;
+import aiproj.slider.Referee;
+
+/**
+ * Measures the bytes the negamax players allocate per search node, from the
+ * empty starting board of each dimension. A search that allocates nothing
+ * per node reports (close to) zero; the little left over is the Move
+ * returned at the end of each search.
+ * 
+ * usage: java aiproj.player.AllocationBenchmark [depth]
+ */
+public class AllocationBenchmark {
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		com.sun.management.ThreadMXBean thread =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		thread.setThreadAllocatedMemoryEnabled(true);
+
+		for (int n = 5; n <= BitBoard.MAX_DIMENSION; n++) {
+			// warm up on other players, so neither the JIT's own allocations
+			// nor a transposition table full of answers affect the measurement
+			for (int k = 0; k < 5; k++) {
+				JoshuaPlayer joshua = new JoshuaPlayer();
+				joshua.init(n, Referee.startingBoard(n), 'H');
+				joshua.getBestMove(depth);
+				HelenPlayer helen = new HelenPlayer();
+				helen.init(n, Referee.startingBoard(n), 'H');
+				helen.getBestMove(depth);
+			}
+
+			JoshuaPlayer joshua = new JoshuaPlayer();
+			joshua.init(n, Referee.startingBoard(n), 'H');
+			HelenPlayer helen = new HelenPlayer();
+			helen.init(n, Referee.startingBoard(n), 'H');
+
+			long before = thread.getCurrentThreadAllocatedBytes();
+			joshua.getBestMove(depth);
+			long joshuaBytes = thread.getCurrentThreadAllocatedBytes() - before;
+
+			before = thread.getCurrentThreadAllocatedBytes();
+			helen.getBestMove(depth);
+			long helenBytes = thread.getCurrentThreadAllocatedBytes() - before;
+
+			System.out.printf("N=%d depth=%d joshua: %d nodes %.4f bytes/node, helen: %d nodes %.4f bytes/node%n",
+					n, depth, joshua.getNodeCount(), (double) joshuaBytes / joshua.getNodeCount(),
+					helen.getNodeCount(), (double) helenBytes / helen.getNodeCount());
+		}
+	}
+}
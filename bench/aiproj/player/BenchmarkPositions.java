@@ -0,0 +1,32 @@
+package aiproj.player;
+
+import java.util.*;
+import aiproj.slider.Referee;
+
+/**
+ * The fixed positions the benchmarks search, for each dimension: the
+ * starting layouts with no blocks, one block and two blocks, each as dealt
+ * and after n plies of play.
+ */
+final class BenchmarkPositions {
+
+	/** The positions for dimension n */
+	static List<String> positions(int n) {
+		List<String> layouts = Referee.layouts(n);
+		List<String> positions = new ArrayList<String>();
+		int[] moves = new int[3 * n];
+		for (String layout : Arrays.asList(layouts.get(0), layouts.get(1), layouts.get(layouts.size() - 1))) {
+			positions.add(layout);
+			SliderBoard board = SliderBoard.create(n, layout);
+			for (int ply = 0; ply < n; ply++) {
+				// always the last move generated: mostly forward moves, so play advances
+				int count = board.getPossibleMoves(ply % 2 == 0, moves);
+				if (count > 0) {
+					board.makeMove(moves[count - 1]);
+				}
+			}
+			positions.add(board.toString());
+		}
+		return positions;
+	}
+}
@@ -0,0 +1,58 @@
+package aiproj.player;
+
+import java.lang.management.ManagementFactory;
+import aiproj.slider.Referee;
+
+/**
+ * Measures MonteCarloPlayer's playouts per second of wall-clock time from the
+ * empty starting board of each dimension, with 1 to maxThreads threads, and
+ * the bytes the calling thread allocates per playout, which for playouts
+ * that allocate nothing is (close to) zero. Each figure is from a fresh
+ * player's first move, after an untimed warm-up move on another.
+ *
+ * usage: java aiproj.player.MonteCarloBenchmark [playouts [maxThreads [N ...]]]
+ */
+public class MonteCarloBenchmark {
+
+	private static final int[] DIMENSIONS = { 8, 12, 16, 24, 32, 48, 64 };
+
+	public static void main(String[] args) {
+		int playouts = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		int[] dimensions = DIMENSIONS;
+		if (args.length > 2) {
+			dimensions = new int[args.length - 2];
+			for (int k = 2; k < args.length; k++) {
+				dimensions[k - 2] = Integer.parseInt(args[k]);
+			}
+		}
+		com.sun.management.ThreadMXBean thread =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		thread.setThreadAllocatedMemoryEnabled(true);
+		System.setProperty("montecarlo.playouts", Integer.toString(playouts));
+
+		for (int n : dimensions) {
+			String board = Referee.startingBoard(n);
+			for (int threads = 1; threads <= maxThreads; threads++) {
+				System.setProperty("montecarlo.threads", Integer.toString(threads));
+
+				MonteCarloPlayer player = new MonteCarloPlayer();
+				player.init(n, board, 'H');
+				player.move();
+
+				player = new MonteCarloPlayer();
+				player.init(n, board, 'H');
+				long before = thread.getCurrentThreadAllocatedBytes();
+				long start = System.nanoTime();
+				player.move();
+				long time = System.nanoTime() - start;
+				long bytes = thread.getCurrentThreadAllocatedBytes() - before;
+
+				System.out.printf("N=%d threads=%d: %d playouts, %.0f playouts/s, %.4f bytes/playout%n",
+						n, threads, player.getPlayoutCount(), player.getPlayoutCount() * 1e9 / time,
+						(double) bytes / player.getPlayoutCount());
+			}
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package aiproj.player;
+
+import aiproj.slider.Referee;
+
+/**
+ * Measures JoshuaPlayer's wall-clock time to reach a fixed depth from the
+ * empty starting board, searching with 1 to maxThreads threads.
+ * 
+ * usage: java aiproj.player.ParallelBenchmark [N [depth [maxThreads]]]
+ */
+public class ParallelBenchmark {
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 14;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		String board = Referee.startingBoard(n);
+
+		for (int threads = 1; threads <= maxThreads; threads++) {
+			System.setProperty("joshua.threads", Integer.toString(threads));
+
+			// warm up on another player, with an empty transposition table each time
+			JoshuaPlayer player = new JoshuaPlayer();
+			player.init(n, board, 'H');
+			player.getBestMove(depth);
+
+			player = new JoshuaPlayer();
+			player.init(n, board, 'H');
+			long start = System.nanoTime();
+			player.getBestMove(depth);
+			long time = System.nanoTime() - start;
+
+			System.out.printf("N=%d depth=%d threads=%d: %d ms, %d nodes%n",
+					n, depth, threads, time / 1000000, player.getNodeCount());
+		}
+	}
+}
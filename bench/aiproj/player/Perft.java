@@ -0,0 +1,148 @@
+package aiproj.player;
+
+import java.util.*;
+import aiproj.slider.Move;
+import aiproj.slider.Referee;
+
+/**
+ * Checks the players' move generation against the Referee's rules, and
+ * times it. For each benchmark position (see BenchmarkPositions) and a few
+ * where one or both sides must pass, with each side to move, counts the
+ * positions reachable in exactly 'depth' moves, passes included, with
+ * Referee.divide() and with each kind of board that holds the dimension
+ * (BitBoard up to 8, WideBoard up to 64), move by move from the root, with
+ * the board's moves turned back into the Referee's coordinates as the
+ * players do. Any difference in the moves or the counts
+ * is reported, and the exit status is 1.
+ *
+ * usage: java aiproj.player.Perft [depth [N ...]]
+ */
+public class Perft {
+
+	/** Positions of dimension 4 where H must pass, and where both sides must */
+	private static final String[] PASSES = {
+			"H V + +\nV + + +\n+ + + +\n+ + + +\n",
+			"+ B + +\nB V B +\nH B + +\nB + + +\n",
+	};
+
+	private static final String[] KINDS = { "BitBoard", "WideBoard" };
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		List<Integer> dimensions = new ArrayList<Integer>();
+		for (int k = 1; k < args.length; k++) {
+			dimensions.add(Integer.parseInt(args[k]));
+		}
+		if (dimensions.isEmpty()) {
+			for (int n = 5; n <= BitBoard.MAX_DIMENSION; n++) {
+				dimensions.add(n);
+			}
+		}
+
+		Map<String, Integer> positions = new LinkedHashMap<String, Integer>();
+		for (String position : PASSES) {
+			positions.put(position, 4);
+		}
+		for (int n : dimensions) {
+			for (String position : BenchmarkPositions.positions(n)) {
+				positions.put(position, n);
+			}
+		}
+
+		boolean passed = true;
+		long[] playerNodes = new long[2], playerTime = new long[2];
+		long refereeNodes = 0, refereeTime = 0;
+		for (Map.Entry<String, Integer> entry : positions.entrySet()) {
+			String position = entry.getKey();
+			int n = entry.getValue();
+			for (char turn : new char[] { 'H', 'V' }) {
+				long start = System.nanoTime();
+				Map<String, Long> expected = Referee.divide(n, position, turn, depth);
+				refereeTime += System.nanoTime() - start;
+
+				refereeNodes += sum(expected);
+
+				for (int kind = 0; kind < 2; kind++) {
+					if (kind == 0 && n > BitBoard.MAX_DIMENSION) {
+						continue;
+					}
+					SliderBoard board = kind == 0 ? new BitBoard(n, position) : new WideBoard(n, position);
+					start = System.nanoTime();
+					Map<String, Long> found = divide(board, turn == 'H', depth);
+					playerTime[kind] += System.nanoTime() - start;
+
+					long count = sum(found);
+					playerNodes[kind] += count;
+					if (!found.equals(expected)) {
+						passed = false;
+						System.out.println("MISMATCH " + KINDS[kind] + " N=" + n + " " + turn + " to move, depth "
+								+ depth + ":\n" + position + " referee: " + expected + "\n player:  " + found);
+					} else {
+						System.out.printf("%s N=%d %c to move: %d positions%n", KINDS[kind], n, turn, count);
+					}
+				}
+			}
+		}
+
+		for (int kind = 0; kind < 2; kind++) {
+			System.out.printf("%-10s %d positions in %d ms, %.0f nodes/s%n", KINDS[kind] + ":",
+					playerNodes[kind], playerTime[kind] / 1000000, playerNodes[kind] * 1e9 / playerTime[kind]);
+		}
+		System.out.printf("referee:   %d positions in %d ms, %.0f nodes/s%n",
+				refereeNodes, refereeTime / 1000000, refereeNodes * 1e9 / refereeTime);
+		System.out.println(passed ? "move generation matches the referee" : "MOVE GENERATION DIFFERS");
+		System.exit(passed ? 0 : 1);
+	}
+
+	private static long sum(Map<String, Long> counts) {
+		long sum = 0;
+		for (long count : counts.values()) {
+			sum += count;
+		}
+		return sum;
+	}
+
+	/** The count for each root move, keyed by the move in the Referee's coordinates */
+	private static Map<String, Long> divide(SliderBoard board, boolean horizontal, int depth) {
+		int[][] moves = new int[depth + 1][board.maxMoves()];
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		int count = board.getPossibleMoves(horizontal, moves[depth]);
+		if (count == 0) {
+			counts.put("pass", perft(board, !horizontal, depth - 1, 1, moves));
+		}
+		for (int k = 0; k < count; k++) {
+			int move = moves[depth][k];
+			board.makeMove(move);
+			counts.put(revertMove(board, move).toString(), perft(board, !horizontal, depth - 1, 0, moves));
+			board.undoMove(move);
+		}
+		return counts;
+	}
+
+	/** The number of positions reachable in exactly depth moves, after 'passes' passes in a row */
+	static long perft(SliderBoard board, boolean horizontal, int depth, int passes, int[][] moves) {
+		if (depth == 0) {
+			return 1;
+		} else if (board.finished() || passes > 1) {
+			return 0;
+		}
+		int count = board.getPossibleMoves(horizontal, moves[depth]);
+		if (count == 0) {
+			return perft(board, !horizontal, depth - 1, passes + 1, moves);
+		}
+		long nodes = 0;
+		for (int k = 0; k < count; k++) {
+			int move = moves[depth][k];
+			board.makeMove(move);
+			nodes += perft(board, !horizontal, depth - 1, 0, moves);
+			board.undoMove(move);
+		}
+		return nodes;
+	}
+
+	/** A move in the players' rotated coordinates, in the Referee's, as the players convert it */
+	private static Move revertMove(SliderBoard board, int move) {
+		Move rotated = board.decodeMove(move);
+		return new Move(rotated.j, board.dimension - rotated.i - 1, rotated.d);
+	}
+}
@@ -0,0 +1,87 @@
+package aiproj.player;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures what late move reductions and null-move pruning buy JoshuaPlayer:
+ * with neither, with each alone and with both, over the benchmark positions
+ * (see BenchmarkPositions) of each dimension, the average depth a search
+ * reaches in a fixed CPU time per move, and the average time and nodes of a
+ * search to a fixed depth. Each is measured from fresh players, after an
+ * untimed warm-up pass.
+ *
+ * The reduction parameters are the players' system properties (see Engine),
+ * so they can be varied from the command line, for instance
+ * java -Djoshua.lmrMoves=2 -Djoshua.nullMove=3 aiproj.player.PruningBenchmark
+ *
+ * usage: java aiproj.player.PruningBenchmark [moveTime [depth [N ...]]]
+ */
+public class PruningBenchmark {
+
+	/** Each configuration, named after the techniques it turns on */
+	private static final String[] CONFIGURATIONS = { "none", "lmr", "null", "both" };
+
+	public static void main(String[] args) throws JMException {
+		long moveTime = args.length > 0 ? Long.parseLong(args[0]) : 100;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+		List<Integer> dimensions = new ArrayList<Integer>();
+		for (int k = 2; k < args.length; k++) {
+			dimensions.add(Integer.parseInt(args[k]));
+		}
+		if (dimensions.isEmpty()) {
+			dimensions.addAll(Arrays.asList(6, 7, 8));
+		}
+
+		// the parameters to restore when a configuration turns a technique back on
+		String lmr = System.getProperty("joshua.lmr"), nullMove = System.getProperty("joshua.nullMove");
+		ObjectName statistics = new ObjectName("aiproj.player:type=SearchStatistics,player=JoshuaPlayer,side=H");
+
+		System.out.printf("%-3s %-5s %14s %14s %14s%n", "N", "", "depth in " + moveTime + "ms", "ms to " + depth,
+				"nodes to " + depth);
+		for (int n : dimensions) {
+			List<String> positions = BenchmarkPositions.positions(n);
+			for (String configuration : CONFIGURATIONS) {
+				configure("joshua.lmr", configuration.equals("lmr") || configuration.equals("both"), lmr);
+				configure("joshua.nullMove", configuration.equals("null") || configuration.equals("both"), nullMove);
+
+				double depths = 0, millis = 0, nodes = 0;
+				for (int pass = 0; pass < 2; pass++) {
+					depths = millis = nodes = 0;
+					for (String position : positions) {
+						System.setProperty("joshua.moveTime", Long.toString(moveTime));
+						JoshuaPlayer player = new JoshuaPlayer();
+						player.init(n, position, 'H');
+						player.move();
+						depths += (Integer) ManagementFactory.getPlatformMBeanServer()
+								.getAttribute(statistics, "LastDepth");
+						System.clearProperty("joshua.moveTime");
+
+						player = new JoshuaPlayer();
+						player.init(n, position, 'H');
+						long start = System.nanoTime();
+						player.getBestMove(depth);
+						millis += (System.nanoTime() - start) / 1e6;
+						nodes += player.getNodeCount();
+					}
+				}
+				int count = positions.size();
+				System.out.printf("%-3d %-5s %14.2f %14.1f %14.0f%n", n, configuration, depths / count,
+						millis / count, nodes / count);
+			}
+		}
+	}
+
+	/** Turn a technique on, with the parameter given on the command line if any, or off */
+	private static void configure(String property, boolean on, String value) {
+		if (!on) {
+			System.setProperty(property, "0");
+		} else if (value != null) {
+			System.setProperty(property, value);
+		} else {
+			System.clearProperty(property);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package aiproj.player;
+
+import java.util.ArrayList;
+import java.util.List;
+import aiproj.slider.Referee;
+
+/**
+ * Measures how speed changes with the board's dimension, from the empty
+ * starting board of each N: perft positions per second (move generation and
+ * make/undo; see Perft) on each kind of board that holds N, and JoshuaPlayer's
+ * search nodes per second at the deepest depth it finishes within RUN_NANOS.
+ * Each figure is from a second, timed run, after an untimed warm-up run.
+ *
+ * usage: java aiproj.player.ScalingBenchmark [N ...]
+ */
+public class ScalingBenchmark {
+
+	/** Each depth ramp stops at the first depth taking at least this long */
+	private static final long RUN_NANOS = 200000000L;
+
+	private static final int[] DIMENSIONS = { 5, 6, 7, 8, 12, 16, 24, 32, 48, 64 };
+
+	public static void main(String[] args) {
+		List<Integer> dimensions = new ArrayList<Integer>();
+		for (String arg : args) {
+			dimensions.add(Integer.parseInt(arg));
+		}
+		if (dimensions.isEmpty()) {
+			for (int n : DIMENSIONS) {
+				dimensions.add(n);
+			}
+		}
+
+		System.out.printf("%3s %16s %16s %6s %16s%n", "N", "BitBoard pos/s", "WideBoard pos/s", "depth", "search nodes/s");
+		for (int n : dimensions) {
+			String board = Referee.startingBoard(n);
+			String bitBoard = "-";
+			if (n <= BitBoard.MAX_DIMENSION) {
+				perft(new BitBoard(n, board));
+				bitBoard = String.format("%.0f", perft(new BitBoard(n, board)));
+			}
+			perft(new WideBoard(n, board));
+			double wideBoard = perft(new WideBoard(n, board));
+			search(n, board);
+			double[] search = search(n, board);
+			System.out.printf("%3d %16s %16.0f %6.0f %16.0f%n", n, bitBoard, wideBoard, search[0], search[1]);
+		}
+	}
+
+	/** Perft positions per second, at the first depth that takes RUN_NANOS */
+	private static double perft(SliderBoard board) {
+		for (int depth = 1;; depth++) {
+			int[][] moves = new int[depth + 1][board.maxMoves()];
+			long start = System.nanoTime();
+			long positions = Perft.perft(board, true, depth, 0, moves);
+			long elapsed = System.nanoTime() - start;
+			if (elapsed >= RUN_NANOS) {
+				return positions * 1e9 / elapsed;
+			}
+		}
+	}
+
+	/** The depth and the nodes per second of the first search from a fresh player that takes RUN_NANOS */
+	private static double[] search(int n, String board) {
+		for (int depth = 1;; depth++) {
+			JoshuaPlayer player = new JoshuaPlayer();
+			player.init(n, board, 'H');
+			long start = System.nanoTime();
+			player.getBestMove(depth);
+			long elapsed = System.nanoTime() - start;
+			if (elapsed >= RUN_NANOS || depth == Engine.MAX_DEPTH) {
+				return new double[] { depth, player.getNodeCount() * 1e9 / elapsed };
+			}
+		}
+	}
+}
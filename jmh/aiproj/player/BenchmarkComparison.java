@@ -0,0 +1,99 @@
+package aiproj.player;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares a run of the JMH benchmarks against an earlier one, from their
+ * CSV result files (gradle jmh writes build/reports/jmh/results.csv), and
+ * fails (exit status 1) if any figure is worse than the earlier run's by
+ * more than the tolerance, so it can gate a change.
+ *
+ * The figures are each benchmark's score, where higher is better for a
+ * throughput and lower for a time per operation; the nodes per second of a
+ * search and its bytes allocated per node, from SearchBenchmark's counters;
+ * and the bytes allocated per operation, if the gc profiler ran. Figures in
+ * only one of the files are skipped.
+ *
+ * usage: java aiproj.player.BenchmarkComparison baseline.csv results.csv [tolerance%]
+ */
+public class BenchmarkComparison {
+
+	private static final double TOLERANCE = 0.1;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java aiproj.player.BenchmarkComparison baseline.csv results.csv [tolerance%]");
+			System.exit(1);
+		}
+		double tolerance = args.length > 2 ? Double.parseDouble(args[2]) / 100 : TOLERANCE;
+		Map<String, Double> baseline = read(args[0]), results = read(args[1]);
+
+		boolean passed = true;
+		for (Map.Entry<String, Double> result : results.entrySet()) {
+			Double saved = baseline.get(result.getKey());
+			if (saved == null) {
+				continue;
+			}
+			double value = result.getValue();
+			boolean lower = result.getKey().endsWith("/op") || result.getKey().endsWith("/node");
+			// a little absolute slack, for figures that are close to zero
+			boolean worse = lower ? value > saved * (1 + tolerance) + 0.01 : value < saved * (1 - tolerance);
+			System.out.printf("%-8s %-70s %14.3f %14.3f%n", worse ? "WORSE" : "", result.getKey(), saved, value);
+			passed &= !worse;
+		}
+		System.out.println((passed ? "no regressions beyond " : "regressions beyond ") + Math.round(tolerance * 100)
+				+ "%");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/** The figures of a JMH CSV result file, by benchmark, parameters and unit */
+	static Map<String, Double> read(String file) throws IOException {
+		Map<String, Double> figures = new LinkedHashMap<String, Double>();
+		Map<String, Double> bytes = new HashMap<String, Double>(), nodes = new HashMap<String, Double>();
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String[] header = fields(in.readLine());
+			String line;
+			while ((line = in.readLine()) != null) {
+				// Benchmark, Mode, Threads, Samples, Score, Score Error, Unit, then each parameter
+				String[] fields = fields(line);
+				String name = fields[0], unit = fields[6];
+				StringBuilder key = new StringBuilder(name.replaceFirst(":.*", ""));
+				for (int k = 7; k < fields.length; k++) {
+					if (!fields[k].isEmpty()) {
+						key.append(' ').append(header[k].replaceFirst("^Param: ", "")).append('=').append(fields[k]);
+					}
+				}
+				double score = Double.parseDouble(fields[4]);
+				if (!name.contains(":")) {
+					figures.put(key + " " + unit, score);
+				} else if (name.endsWith(":nodes")) {
+					figures.put(key + " nodes/s", score);
+					nodes.put(key.toString(), score);
+				} else if (name.endsWith(":bytes")) {
+					bytes.put(key.toString(), score);
+				} else if (name.endsWith("gc.alloc.rate.norm")) {
+					figures.put(key + " allocated " + unit, score);
+				}
+			}
+		}
+		for (Map.Entry<String, Double> count : nodes.entrySet()) {
+			Double allocated = bytes.get(count.getKey());
+			if (allocated != null && count.getValue() > 0) {
+				figures.put(count.getKey() + " bytes/node", allocated / count.getValue());
+			}
+		}
+		return figures;
+	}
+
+	/** The comma-separated fields of a line, unquoted */
+	private static String[] fields(String line) {
+		String[] fields = line.split(",", -1);
+		for (int k = 0; k < fields.length; k++) {
+			fields[k] = fields[k].replaceAll("^\"|\"$", "");
+		}
+		return fields;
+	}
+}
@@ -0,0 +1,95 @@
+package aiproj.player;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The board operations the search spends its time in, on the benchmark
+ * positions (see BenchmarkPositions) of each dimension from 5 to 8: move
+ * generation, makeMove()/undoMove() (which also keep the evaluation terms up
+ * to date), and evaluation from those terms. Each operation counts once per
+ * position and side, so scores are comparable between dimensions.
+ *
+ * gradle jmh -Pjmh.includes=BoardBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	/** Positions per dimension, each benchmarked for both sides */
+	private static final int OPERATIONS = 2 * 6;
+
+	@Param({ "5", "6", "7", "8" })
+	public int n;
+
+	private BitBoard[] boards;
+	private Evaluator evaluator;
+	private int[] moves;
+
+	/** Every legal move of each position, for each side */
+	private int[][][] legalMoves;
+
+	@Setup
+	public void setUp() {
+		List<String> positions = BenchmarkPositions.positions(n);
+		boards = new BitBoard[positions.size()];
+		legalMoves = new int[positions.size()][2][];
+		moves = new int[BitBoard.MAX_MOVES];
+		for (int k = 0; k < boards.length; k++) {
+			boards[k] = new BitBoard(n, positions.get(k));
+			for (int side = 0; side < 2; side++) {
+				legalMoves[k][side] = Arrays.copyOf(moves, boards[k].getPossibleMoves(side == 0, moves));
+			}
+		}
+		evaluator = JoshuaPlayer.defaultWeights(n).evaluator(boards[0]);
+		for (BitBoard board : boards) {
+			board.setWeights(evaluator.hweights, evaluator.vweights);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public int moveGeneration() {
+		int count = 0;
+		for (BitBoard board : boards) {
+			count += board.getPossibleMoves(true, moves);
+			count += board.getPossibleMoves(false, moves);
+		}
+		return count;
+	}
+
+	/** Every legal move of both sides, made and undone */
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public int makeUndo() {
+		int score = 0;
+		for (int k = 0; k < boards.length; k++) {
+			BitBoard board = boards[k];
+			for (int[] side : legalMoves[k]) {
+				for (int move : side) {
+					board.makeMove(move);
+					score += board.hscore - board.vscore;
+					board.undoMove(move);
+				}
+			}
+		}
+		return score;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public int evaluate() {
+		int score = 0;
+		for (BitBoard board : boards) {
+			score += evaluator.evaluate(board, true);
+			score += evaluator.evaluate(board, false);
+		}
+		return score;
+	}
+}
@@ -0,0 +1,94 @@
+package aiproj.player;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Searches by the negamax players, to DEPTH from each benchmark position (see
+ * BenchmarkPositions) in turn, by a fresh player each time, for each
+ * dimension from 5 to 8. Setting up the player, whose transposition table
+ * alone is 16MB, is not measured.
+ *
+ * timeToDepth is the time of a search. search reports, beside searches per
+ * second, the nodes per second and the bytes allocated per second of the
+ * searches themselves; the JMH gc profiler's allocation figures also count
+ * each player's set-up.
+ *
+ * gradle jmh -Pjmh.includes=SearchBenchmark
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class SearchBenchmark {
+
+	private static final int DEPTH = 12;
+
+	@Param({ "5", "6", "7", "8" })
+	public int n;
+
+	@Param({ "joshua", "helen" })
+	public String player;
+
+	private List<String> positions;
+	private int next;
+
+	private JoshuaPlayer joshua;
+	private HelenPlayer helen;
+
+	private final com.sun.management.ThreadMXBean thread =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/** What the searches did, per second */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+
+		public long nodes;
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			nodes = bytes = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		positions = BenchmarkPositions.positions(n);
+		thread.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/** A fresh player for the next position */
+	@Setup(Level.Invocation)
+	public void setUp() {
+		String position = positions.get(next++ % positions.size());
+		if (player.equals("joshua")) {
+			joshua = new JoshuaPlayer();
+			joshua.init(n, position, 'H');
+		} else {
+			helen = new HelenPlayer();
+			helen.init(n, position, 'H');
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Object search(Counters counters) {
+		long before = thread.getCurrentThreadAllocatedBytes();
+		Object move = player.equals("joshua") ? joshua.getBestMove(DEPTH) : helen.getBestMove(DEPTH);
+		counters.bytes += thread.getCurrentThreadAllocatedBytes() - before;
+		counters.nodes += player.equals("joshua") ? joshua.getNodeCount() : helen.getNodeCount();
+		return move;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Object timeToDepth() {
+		return player.equals("joshua") ? joshua.getBestMove(DEPTH) : helen.getBestMove(DEPTH);
+	}
+}
@@ -0,0 +1,424 @@
+package aiproj.player;
+
+import java.util.Random;
+import aiproj.slider.Move;
+import aiproj.slider.Move.Direction;
+
+/**
+ * Bitboard representation of a Slider board of dimension up to 8, shared by
+ * the negamax players (see SliderBoard; WideBoard holds larger boards). Uses
+ * the players' rotated coordinates: row i counts down from the top of the
+ * board and column j counts right, so horizontal sliders leave the board to
+ * the right and vertical sliders leave it upwards. Square (i, j) is bit
+ * i * 8 + j of each of the three piece sets.
+ * 
+ * The board also keeps a Zobrist hash of the position, the number of
+ * sliders of each type, and the sum of a per-square weight over each type's
+ * sliders, all updated incrementally as moves are made and undone.
+ * 
+ * Inside the search a move is an int, square << 2 | direction, with the
+ * directions numbered as in Move.Direction; only moves that cross the
+ * SliderPlayer interface are turned into Move objects.
+ */
+final class BitBoard extends SliderBoard {
+
+	static final int MAX_DIMENSION = 8;
+
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/** The number of move codes other than NO_MOVE */
+	static final int MOVE_CODES = 64 * 4;
+
+	/** The most moves one side can have on a board */
+	static final int MAX_MOVES = 3 * MAX_DIMENSION;
+
+	/** Zobrist keys for each piece type on each square, and for V to move */
+	private static final long[] HKEYS = new long[64], VKEYS = new long[64], BKEYS = new long[64];
+	static final long VTURN_KEY;
+
+	static {
+		// fixed seed, so hashes are the same from one run to the next, and
+		// can be stored in files such as the opening book
+		Random random = new Random(30024);
+		for (int square = 0; square < 64; square++) {
+			HKEYS[square] = random.nextLong();
+			VKEYS[square] = random.nextLong();
+		}
+		VTURN_KEY = random.nextLong();
+		for (int square = 0; square < 64; square++) {
+			BKEYS[square] = random.nextLong();
+		}
+	}
+
+	long hsliders, vsliders, blocks;
+
+	/** The weight of a slider on each square, summed into hscore and vscore */
+	private int[] hweights = new int[64], vweights = new int[64];
+
+	/** Masks of every square on the board, and of its edge rows and columns */
+	private final long cells, firstColumn, lastColumn, topRow;
+
+	BitBoard(int dimension, String board) {
+		super(dimension, 3);
+		if (dimension > MAX_DIMENSION) {
+			throw new IllegalArgumentException("unsupported board dimension: " + dimension);
+		}
+
+		long cells = 0, firstColumn = 0, lastColumn = 0;
+		for (int i = 0; i < dimension; i++) {
+			cells |= ((1L << dimension) - 1) << (i << 3);
+			firstColumn |= bit(i, 0);
+			lastColumn |= bit(i, dimension - 1);
+		}
+		this.cells = cells;
+		this.firstColumn = firstColumn;
+		this.lastColumn = lastColumn;
+		this.topRow = (1L << dimension) - 1;
+
+		int index = 0;
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j < dimension; j++) {
+				while ("+BHV".indexOf(board.charAt(index)) < 0) {
+					index++;
+				}
+				switch (board.charAt(index)) {
+				case 'B':
+					blocks |= bit(i, j);
+					hash ^= BKEYS[square(i, j)];
+					break;
+				case 'H':
+					toggleH(bit(i, j));
+					break;
+				case 'V':
+					toggleV(bit(i, j));
+					break;
+				}
+				index++;
+			}
+		}
+	}
+
+	/** A copy of another board, to be searched independently of it */
+	BitBoard(BitBoard board) {
+		super(board.dimension, 3);
+		this.cells = board.cells;
+		this.firstColumn = board.firstColumn;
+		this.lastColumn = board.lastColumn;
+		this.topRow = board.topRow;
+		this.blocks = board.blocks;
+		copyFrom(board);
+	}
+
+	SliderBoard copy() {
+		return new BitBoard(this);
+	}
+
+	/** Set the sliders of this board, and the state derived from them, to another's */
+	void copyFrom(SliderBoard other) {
+		BitBoard board = (BitBoard) other;
+		hsliders = board.hsliders;
+		vsliders = board.vsliders;
+		hash = board.hash;
+		hcount = board.hcount;
+		vcount = board.vcount;
+		hscore = board.hscore;
+		vscore = board.vscore;
+		hweights = board.hweights;
+		vweights = board.vweights;
+	}
+
+	/** The hash of this position with the given side to move */
+	long key(boolean horizontal) {
+		return horizontal ? hash : hash ^ VTURN_KEY;
+	}
+
+	/** The board in the Referee's text format, which the constructor reads back */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder(2 * dimension * dimension);
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j < dimension; j++) {
+				long bit = bit(i, j);
+				char c = (hsliders & bit) != 0 ? 'H' : (vsliders & bit) != 0 ? 'V' : (blocks & bit) != 0 ? 'B' : '+';
+				s.append(j == 0 ? "" : " ").append(c);
+			}
+			s.append('\n');
+		}
+		return s.toString();
+	}
+
+	static int square(int i, int j) {
+		return i << 3 | j;
+	}
+
+	static long bit(int i, int j) {
+		return 1L << square(i, j);
+	}
+
+	static int encode(int i, int j, Direction d) {
+		return square(i, j) << 2 | d.ordinal();
+	}
+
+	static Move decode(int move) {
+		int square = move >>> 2;
+		return new Move(square >>> 3, square & 7, DIRECTIONS[move & 3]);
+	}
+
+	/** Whether a legal move takes its slider off the board */
+	boolean isExit(int move) {
+		int square = move >>> 2;
+		return (move & 3) == RIGHT && (square & 7) == dimension - 1
+				|| (move & 3) == UP && square < 8;
+	}
+
+	/** Add or remove the horizontal sliders on the given squares */
+	private void toggleH(long squares) {
+		hsliders ^= squares;
+		for (; squares != 0; squares &= squares - 1) {
+			int square = Long.numberOfTrailingZeros(squares);
+			hash ^= HKEYS[square];
+			if ((hsliders >>> square & 1) != 0) {
+				hcount++;
+				hscore += hweights[square];
+			} else {
+				hcount--;
+				hscore -= hweights[square];
+			}
+		}
+	}
+
+	/** Add or remove the vertical sliders on the given squares */
+	private void toggleV(long squares) {
+		vsliders ^= squares;
+		for (; squares != 0; squares &= squares - 1) {
+			int square = Long.numberOfTrailingZeros(squares);
+			hash ^= VKEYS[square];
+			if ((vsliders >>> square & 1) != 0) {
+				vcount++;
+				vscore += vweights[square];
+			} else {
+				vcount--;
+				vscore -= vweights[square];
+			}
+		}
+	}
+
+	boolean isBlock(int square) {
+		return (blocks >>> square & 1) != 0;
+	}
+
+	boolean isBlock(int i, int j) {
+		return isBlock(square(i, j));
+	}
+
+	boolean isH(int i, int j) {
+		return (hsliders >>> square(i, j) & 1) != 0;
+	}
+
+	boolean isV(int i, int j) {
+		return (vsliders >>> square(i, j) & 1) != 0;
+	}
+
+	int frontRow() {
+		return Long.numberOfTrailingZeros(vsliders) >>> 3;
+	}
+
+	int frontColumn() {
+		// fold the rows together, leaving the occupied columns in the low byte
+		long columns = hsliders | hsliders >>> 32;
+		columns |= columns >>> 16;
+		columns |= columns >>> 8;
+		return 63 - Long.numberOfLeadingZeros(columns & 0xFF);
+	}
+
+	long empty() {
+		return cells & ~(hsliders | vsliders | blocks);
+	}
+
+	/** Replace the per-square weights of each slider type, and recompute the scores */
+	void setWeights(int[] hweights, int[] vweights) {
+		this.hweights = hweights;
+		this.vweights = vweights;
+		hscore = sum(hsliders, hweights);
+		vscore = sum(vsliders, vweights);
+	}
+
+	private static int sum(long squares, int[] weights) {
+		int sum = 0;
+		for (; squares != 0; squares &= squares - 1) {
+			sum += weights[Long.numberOfTrailingZeros(squares)];
+		}
+		return sum;
+	}
+
+	/** Check the incrementally updated state against a full recompute, for debugging */
+	boolean verify() {
+		long hash = 0;
+		for (long squares = blocks; squares != 0; squares &= squares - 1) {
+			hash ^= BKEYS[Long.numberOfTrailingZeros(squares)];
+		}
+		for (long squares = hsliders; squares != 0; squares &= squares - 1) {
+			hash ^= HKEYS[Long.numberOfTrailingZeros(squares)];
+		}
+		for (long squares = vsliders; squares != 0; squares &= squares - 1) {
+			hash ^= VKEYS[Long.numberOfTrailingZeros(squares)];
+		}
+		return hash == this.hash
+				&& hcount == Long.bitCount(hsliders) && vcount == Long.bitCount(vsliders)
+				&& hscore == sum(hsliders, hweights) && vscore == sum(vsliders, vweights);
+	}
+
+	/** The number of moves the given side needs to clear its sliders off an empty board */
+	int distance(boolean horizontal) {
+		int distance = 0;
+		for (long pieces = horizontal ? hsliders : vsliders; pieces != 0; pieces &= pieces - 1) {
+			int square = Long.numberOfTrailingZeros(pieces);
+			distance += horizontal ? dimension - (square & 7) : (square >>> 3) + 1;
+		}
+		return distance;
+	}
+
+	/*
+	 * Each of the following returns the set of squares holding a slider that
+	 * can move in the given direction (exits included).
+	 */
+
+	long hRight(long empty) {
+		return (hsliders & lastColumn) | (((hsliders & ~lastColumn) << 1) & empty) >>> 1;
+	}
+
+	long hDown(long empty) {
+		return ((hsliders << 8) & empty) >>> 8;
+	}
+
+	long hUp(long empty) {
+		return ((hsliders >>> 8) & empty) << 8;
+	}
+
+	long vUp(long empty) {
+		return (vsliders & topRow) | ((vsliders >>> 8) & empty) << 8;
+	}
+
+	long vLeft(long empty) {
+		return (((vsliders & ~firstColumn) >>> 1) & empty) << 1;
+	}
+
+	long vRight(long empty) {
+		return (((vsliders & ~lastColumn) << 1) & empty) >>> 1;
+	}
+
+	/**
+	 * Fill moves with the legal moves of the given side and return how many
+	 * there are, in the order the players have always searched them:
+	 * horizontal sliders from the bottom right corner, vertical sliders from
+	 * the top right corner.
+	 */
+	int getPossibleMoves(boolean horizontal, int[] moves) {
+		int count = 0;
+		long empty = empty();
+
+		if (horizontal) {
+			long right = hRight(empty), down = hDown(empty), up = hUp(empty);
+			long movable = right | down | up;
+			while (movable != 0) {
+				int square = 63 - Long.numberOfLeadingZeros(movable);
+				long bit = 1L << square;
+				movable ^= bit;
+				if ((right & bit) != 0) {
+					moves[count++] = square << 2 | RIGHT;
+				}
+				if ((down & bit) != 0) {
+					moves[count++] = square << 2 | DOWN;
+				}
+				if ((up & bit) != 0) {
+					moves[count++] = square << 2 | UP;
+				}
+			}
+		} else {
+			long up = vUp(empty), left = vLeft(empty), right = vRight(empty);
+			long movable = up | left | right;
+			for (int i = 0; i < dimension && movable != 0; i++) {
+				long row = movable & (0xFFL << (i << 3));
+				movable ^= row;
+				while (row != 0) {
+					int square = 63 - Long.numberOfLeadingZeros(row);
+					long bit = 1L << square;
+					row ^= bit;
+					if ((up & bit) != 0) {
+						moves[count++] = square << 2 | UP;
+					}
+					if ((left & bit) != 0) {
+						moves[count++] = square << 2 | LEFT;
+					}
+					if ((right & bit) != 0) {
+						moves[count++] = square << 2 | RIGHT;
+					}
+				}
+			}
+		}
+
+		return count;
+	}
+
+	void makeMove(int move) {
+		int square = move >>> 2;
+		long from = 1L << square;
+
+		switch (move & 3) {
+		case UP:
+			if ((hsliders & from) != 0) {
+				toggleH(from | from >>> 8);
+			} else {
+				// a vertical slider on the top row leaves the board
+				toggleV(square < 8 ? from : from | from >>> 8);
+			}
+			break;
+		case DOWN:
+			toggleH(from | from << 8);
+			break;
+		case RIGHT:
+			if ((hsliders & from) != 0) {
+				// a horizontal slider in the last column leaves the board
+				toggleH((square & 7) == dimension - 1 ? from : from | from << 1);
+			} else {
+				toggleV(from | from << 1);
+			}
+			break;
+		case LEFT:
+			toggleV(from | from >>> 1);
+			break;
+		}
+	}
+
+	void undoMove(int move) {
+		int square = move >>> 2;
+		long from = 1L << square;
+
+		switch (move & 3) {
+		case UP:
+			if (square < 8) {
+				toggleV(from);
+			} else if ((hsliders & from >>> 8) != 0) {
+				toggleH(from | from >>> 8);
+			} else {
+				toggleV(from | from >>> 8);
+			}
+			break;
+		case DOWN:
+			toggleH(from | from << 8);
+			break;
+		case RIGHT:
+			if ((square & 7) == dimension - 1) {
+				toggleH(from);
+			} else if ((hsliders & from << 1) != 0) {
+				toggleH(from | from << 1);
+			} else {
+				toggleV(from | from << 1);
+			}
+			break;
+		case LEFT:
+			toggleV(from | from >>> 1);
+			break;
+		}
+	}
+}
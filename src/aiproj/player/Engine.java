@@ -0,0 +1,901 @@
+package aiproj.player;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.*;
+import aiproj.slider.Move;
+
+/**
+ * The search shared by the negamax players: each player is an evaluator, a
+ * search policy and a name for its system properties, and passes its
+ * SliderPlayer calls on to an engine.
+ * 
+ * Each move is searched by iterative deepening, to the policy's depth or as
+ * deep as its CPU time budget allows, measured on the same thread CPU clock
+ * as the Referee. Each iteration is a principal variation search inside an
+ * aspiration window around the previous iteration's score.
+ * 
+ * The rest is configured by system properties, named after the player's
+ * prefix (joshua for JoshuaPlayer, for instance):
+ * 
+ * prefix.threads, above one, searches in parallel (Lazy SMP): helper threads
+ * search the same position on their own copies of the board, half of them
+ * one ply deeper, sharing what they find through the transposition table.
+ * The time budget is measured on the calling thread. The helper threads,
+ * like the pondering thread, come from a pool shared by all engines.
+ * 
+ * prefix.book, an opening book file for the board's dimension (see
+ * OpeningBook), plays the book's move whenever the position is in it.
+ * 
+ * prefix.tablebases, a directory of endgame tablebases (see Tablebase), uses
+ * the one for the board's layout, if there is one: won and lost positions in
+ * it score as exact wins or losses inside the search, and once the game
+ * itself reaches one every move is read from it instead of searched. Drawn
+ * positions are still searched and evaluated as usual, since the Referee has
+ * no repetition rule to end a drawn game.
+ * 
+ * prefix.ponder searches on the opponent's time: between move() and the next
+ * update(), a background thread searches the position after the reply the
+ * principal variation predicts (or, with no prediction, all replies).
+ * update() stops it before touching the board; its results stay in the
+ * transposition table, and a correct prediction also passes on its
+ * principal variation. It searches no more than a move of the player's own
+ * would, to the policy's depth or for its time budget on the pondering
+ * thread's CPU clock, so it ends even if no update() comes.
+ * 
+ * prefix.quiescence is the node budget of the quiescence search at each
+ * horizon node (QUIESCENCE_NODES by default; 0 turns it off). Rather than
+ * evaluating the position at once, it searches on through forcing moves
+ * only, exits and moves that block the opponent's front sliders, so that a
+ * slider one step from leaving, or about to be blocked, is not misjudged
+ * at the horizon. The side to move may instead stand pat on the evaluation,
+ * and so can stop the search with a cutoff whenever that is good enough.
+ * 
+ * Moves late in the ordering are searched with late move reductions: once
+ * prefix.lmrMoves moves (3) have been searched at a node at least
+ * prefix.lmrDepth (3) deep, each quiet move after them is searched
+ * prefix.lmr plies (1) shallower, with a null window, and searched again at
+ * full depth only if it beats alpha. Only sideways moves count as quiet: in
+ * a race to the far edge a forward move is rarely one to put off, and
+ * reducing them too lost games at equal time. Exits, the hash move and
+ * killers are never reduced.
+ * 
+ * Null-move pruning lets the side to move pass at a node outside the
+ * principal variation whose evaluation is already at least beta: if the
+ * opponent, moving twice, still cannot bring the score below beta in a
+ * search prefix.nullMove plies (2) shallower than usual, the node is cut
+ * off. Passing is a real move in Slider, and there are positions where any
+ * move makes things worse, so a null move is never made twice in a row, nor
+ * by a side down to NULL_MOVE_SLIDERS sliders, and a cutoff only stands if
+ * a search of the node itself, as shallow and with no null moves below it,
+ * confirms it. Setting any of these parameters to 0 turns the technique off.
+ * 
+ * prefix.verbose prints each iteration's score and principal variation, and
+ * each search's statistics, to standard error. The statistics are also
+ * published over JMX (see SearchStatistics).
+ * 
+ * The evaluation is kept up to date by the board as moves are made and
+ * undone; running with assertions enabled (java -ea) checks the board's
+ * incremental state against a full recompute at every leaf.
+ */
+final class Engine {
+
+	static final int MAX_DEPTH = 64;
+
+	/** Nodes searched between checks of the clock */
+	private static final int CLOCK_INTERVAL = 1024;
+
+	/** The transposition table holds 2^TABLE_BITS entries */
+	private static final int TABLE_BITS = 20;
+
+	/** The default node budget of the quiescence search at each horizon node */
+	private static final int QUIESCENCE_NODES = 32;
+
+	/** Default late move reduction: reduce by LMR plies after LMR_MOVES moves, from LMR_DEPTH */
+	private static final int LMR = 1, LMR_MOVES = 3, LMR_DEPTH = 3;
+
+	/** Default null move reduction, and the fewest sliders a side may pass with */
+	private static final int NULL_MOVE = 2;
+	private static final int NULL_MOVE_SLIDERS = 3;
+
+	/**
+	 * The threads the helper and pondering searches run on, shared by all
+	 * engines, so that an engine holds no threads of its own: threads are
+	 * started as needed, and end once idle for a minute.
+	 */
+	private static final ExecutorService WORKERS = Executors.newCachedThreadPool(daemon("Engine worker"));
+
+	/** Half the width of the first aspiration window, doubled on each failure */
+	private static final int ASPIRATION_WINDOW = 4;
+
+	/** Move ordering scores, above any history score */
+	private static final int PV_MOVE_SCORE = (1 << 30) + 1;
+	private static final int HASH_MOVE_SCORE = 1 << 30;
+	private static final int EXIT_SCORE = 1 << 29;
+	private static final int KILLER_SCORE = 1 << 28;
+
+	/** The score of a tablebase win, less a point per ply to it; above any evaluation */
+	private static final int TABLEBASE_WIN = 1 << 20;
+	private static final int INFINITY = TABLEBASE_WIN + 1;
+
+	private static enum Player {
+		HPLAYER, VPLAYER
+	}
+
+	private final String name;
+	private final int dimension;
+	private final SliderBoard board;
+	private final Player player;
+
+	/** What the players differ in: how to evaluate positions, and how deep to search */
+	private final Evaluator evaluator;
+	private final SearchPolicy policy;
+
+	/** Search results, kept from one move to the next */
+	private final TranspositionTable table;
+
+	/** Precomputed moves for the opening, if any */
+	private OpeningBook book;
+	private final int[] legalMoves;
+
+	/** Solved endgame positions for this board's layout, if any; only BitBoard layouts have them */
+	private Tablebase tablebase;
+
+	/** Searchers[0] searches on the calling thread, the rest on the helper threads */
+	private final int threads;
+	private final int quiescenceNodes;
+	private final int lmr, lmrMoves, lmrDepth, nullMove;
+	private final Searcher[] searchers;
+
+	private final ThreadMXBean clock = ManagementFactory.getThreadMXBean();
+	private long timeUsed;
+	private long deadline;
+
+	/** Set to stop the helper threads' searches */
+	private volatile boolean stopped;
+
+	private final boolean verbose;
+	private final SearchStatistics statistics;
+
+	/** The id of the pondering searcher, and its prediction when it has none */
+	private static final int PONDERER = -1;
+	private static final int ANY_REPLY = -1;
+
+	/** Pondering: a searcher working on the opponent's time, and the reply it assumes */
+	private final boolean ponder;
+	private Searcher ponderer;
+	private Future<?> pondering;
+	private int ponderMove;
+	private boolean ponderHit;
+
+	/** Set to stop the pondering searcher */
+	private volatile boolean ponderStopped;
+
+	/** When the pondering searcher is out of time, on its own thread's CPU clock */
+	private long ponderDeadline;
+
+	/**
+	 * An engine for a player called name, reading its system properties
+	 * from properties.threads, properties.book and so on, playing the given
+	 * side ('H' or 'V') from the given board
+	 */
+	Engine(String name, String properties, SliderBoard board, char player, Evaluator evaluator, SearchPolicy policy) {
+		this.name = name;
+		this.dimension = board.dimension;
+		this.board = board;
+		this.player = player == 'H' ? Player.HPLAYER : Player.VPLAYER;
+		this.evaluator = evaluator;
+		this.policy = policy;
+		this.board.setWeights(evaluator.hweights, evaluator.vweights);
+		this.table = new TranspositionTable(TABLE_BITS);
+		this.legalMoves = new int[board.maxMoves()];
+		this.threads = Math.max(1, Integer.getInteger(properties + ".threads", 1));
+		this.quiescenceNodes = Math.max(0, Integer.getInteger(properties + ".quiescence", QUIESCENCE_NODES));
+		this.lmr = Math.max(0, Integer.getInteger(properties + ".lmr", LMR));
+		this.lmrMoves = Math.max(1, Integer.getInteger(properties + ".lmrMoves", LMR_MOVES));
+		this.lmrDepth = Math.max(lmr + 1, Integer.getInteger(properties + ".lmrDepth", LMR_DEPTH));
+		this.nullMove = Math.max(0, Integer.getInteger(properties + ".nullMove", NULL_MOVE));
+		this.ponder = Boolean.getBoolean(properties + ".ponder");
+		this.verbose = Boolean.getBoolean(properties + ".verbose");
+		this.statistics = SearchStatistics.register(name, player);
+
+		String book = System.getProperty(properties + ".book");
+		if (book != null) {
+			try {
+				this.book = OpeningBook.open(book, dimension);
+			} catch (IOException e) {
+				System.err.println(name + ": not using opening book: " + e.getMessage());
+			}
+		}
+		String tablebases = System.getProperty(properties + ".tablebases");
+		if (tablebases != null && board instanceof BitBoard) {
+			long blocks = ((BitBoard) board).blocks;
+			Path file = Tablebase.file(tablebases, dimension, blocks);
+			try {
+				this.tablebase = Files.exists(file) ? Tablebase.open(file, dimension, blocks) : null;
+			} catch (IOException e) {
+				System.err.println(name + ": not using tablebase: " + e.getMessage());
+			}
+		}
+
+		this.searchers = new Searcher[threads];
+		for (int k = 0; k < threads; k++) {
+			searchers[k] = new Searcher(k);
+		}
+		if (ponder) {
+			this.ponderer = new Searcher(PONDERER);
+		}
+	}
+
+	private static ThreadFactory daemon(String name) {
+		return runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/** Apply the opponent's move (null for a pass), as SliderPlayer.update() */
+	void update(Move move) {
+		long start = clock.getCurrentThreadCpuTime();
+		int reply = move == null ? SliderBoard.NO_MOVE : convertMove(move);
+		stopPondering(reply);
+		if (reply != SliderBoard.NO_MOVE) {
+			board.makeMove(reply);
+		}
+		timeUsed += clock.getCurrentThreadCpuTime() - start;
+	}
+
+	private int convertMove(Move move) {
+		return board.encodeMove(dimension - move.j - 1, move.i, move.d);
+	}
+
+	private Move revertMove(int move) {
+		Move rotated = board.decodeMove(move);
+		return new Move(rotated.j, dimension - rotated.i - 1, rotated.d);
+	}
+
+	/** Choose, make and return a move (null for a pass), as SliderPlayer.move() */
+	Move move() {
+		long start = clock.getCurrentThreadCpuTime();
+		int move = bookMove();
+		if (move == SliderBoard.NO_MOVE) {
+			move = tablebaseMove();
+		}
+		if (move != SliderBoard.NO_MOVE) {
+			// the search's principal variation no longer applies
+			searchers[0].principalLength = 0;
+		} else if (policy.timed()) {
+			move = search(MAX_DEPTH, start + policy.budget(timeUsed, board.distance(player == Player.HPLAYER)));
+		} else {
+			move = search(policy.depth(board), Long.MAX_VALUE);
+		}
+		if (move != SliderBoard.NO_MOVE) {
+			board.makeMove(move);
+		}
+		if (ponder && !board.finished()) {
+			startPondering();
+		}
+		timeUsed += clock.getCurrentThreadCpuTime() - start;
+		return move == SliderBoard.NO_MOVE ? null : revertMove(move);
+	}
+
+	/** The opening book's move for the current position, or NO_MOVE */
+	private int bookMove() {
+		if (book == null) {
+			return SliderBoard.NO_MOVE;
+		}
+		int move = book.probe(board.key(player == Player.HPLAYER));
+		int count = board.getPossibleMoves(player == Player.HPLAYER, legalMoves);
+		for (int k = 0; k < count; k++) {
+			if (legalMoves[k] == move) {
+				return move;
+			}
+		}
+		return SliderBoard.NO_MOVE;
+	}
+
+	/**
+	 * The tablebase's best move for the current position, or NO_MOVE unless it
+	 * is a tablebase win or loss: the quickest win, or the slowest loss.
+	 */
+	private int tablebaseMove() {
+		boolean horizontal = player == Player.HPLAYER;
+		int value = tablebase == null ? 0 : probe(board, horizontal);
+		if (value == 0 || value == Tablebase.NOT_FOUND) {
+			return SliderBoard.NO_MOVE;
+		}
+		int bestMove = SliderBoard.NO_MOVE, bestScore = -INFINITY;
+		int count = board.getPossibleMoves(horizontal, legalMoves);
+		for (int k = 0; k < count; k++) {
+			board.makeMove(legalMoves[k]);
+			int score = board.finished() ? TABLEBASE_WIN
+					: -tablebaseScore(probe(board, !horizontal));
+			board.undoMove(legalMoves[k]);
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = legalMoves[k];
+			}
+		}
+		return bestMove;
+	}
+
+	/** The tablebase's value of a position on a board with a tablebase, a BitBoard */
+	private int probe(SliderBoard board, boolean horizontal) {
+		BitBoard bitBoard = (BitBoard) board;
+		return tablebase.probe(bitBoard.hsliders, bitBoard.vsliders, horizontal);
+	}
+
+	/** The score of a tablebase value, for the side to move */
+	private static int tablebaseScore(int value) {
+		return value > 0 ? TABLEBASE_WIN - value : value < 0 ? -TABLEBASE_WIN - value : 0;
+	}
+
+	/**
+	 * Start searching, in the background, the position after the opponent's
+	 * predicted reply. The pondering searcher copies the board here, on the
+	 * calling thread, and never touches the player's board after that.
+	 */
+	private void startPondering() {
+		Searcher main = searchers[0];
+		ponderMove = main.principalLength > 1 ? main.principal[1] : ANY_REPLY;
+		ponderer.reset();
+		if (ponderMove == ANY_REPLY) {
+			ponderer.player = player == Player.HPLAYER ? Player.VPLAYER : Player.HPLAYER;
+		} else if (ponderMove != SliderBoard.NO_MOVE) {
+			ponderer.board.makeMove(ponderMove);
+		}
+		ponderStopped = false;
+		boolean timed = policy.timed();
+		int depth = timed ? MAX_DEPTH : policy.depth(ponderer.board);
+		long budget = timed ? policy.budget(timeUsed, board.distance(player == Player.HPLAYER)) : 0;
+		pondering = WORKERS.submit(() -> {
+			ponderDeadline = timed ? clock.getCurrentThreadCpuTime() + budget : Long.MAX_VALUE;
+			ponderer.iterate(depth);
+		});
+	}
+
+	/** Stop any background search, noting whether it predicted the actual reply */
+	private void stopPondering(int reply) {
+		if (pondering == null) {
+			return;
+		}
+		ponderStopped = true;
+		try {
+			pondering.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("pondering failed", e);
+		}
+		pondering = null;
+		ponderHit = ponderMove == reply;
+	}
+
+	/** The number of nodes visited by the last search, over all threads */
+	long getNodeCount() {
+		long nodes = 0;
+		for (Searcher searcher : searchers) {
+			nodes += searcher.nodes;
+		}
+		return nodes;
+	}
+
+	/** A sequence of moves in the Referee's coordinates, for logging */
+	private String describe(int[] moves, int length) {
+		StringBuilder s = new StringBuilder();
+		for (int k = 0; k < length; k++) {
+			s.append(k == 0 ? "" : ", ").append(moves[k] == SliderBoard.NO_MOVE ? "pass" : revertMove(moves[k]));
+		}
+		return s.toString();
+	}
+
+	/** The best move to the given depth, in the players' rotated coordinates */
+	Move getBestMove(int depth) {
+		int move = search(depth, Long.MAX_VALUE);
+		return move == SliderBoard.NO_MOVE ? null : board.decodeMove(move);
+	}
+
+	/**
+	 * Search the current position to maxDepth or until the deadline, on the
+	 * calling thread and on any helper threads, and return the best move the
+	 * calling thread found.
+	 */
+	private int search(int maxDepth, long deadline) {
+		this.deadline = deadline;
+		stopped = false;
+		for (Searcher searcher : searchers) {
+			searcher.reset();
+		}
+		if (ponderHit) {
+			searchers[0].follow(ponderer);
+			ponderHit = false;
+		}
+
+		Future<?>[] futures = new Future<?>[threads - 1];
+		for (int k = 1; k < threads; k++) {
+			Searcher helper = searchers[k];
+			futures[k - 1] = WORKERS.submit(() -> helper.iterate(MAX_DEPTH));
+		}
+
+		int move = searchers[0].iterate(maxDepth);
+
+		stopped = true;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("helper search failed", e);
+			}
+		}
+
+		long nodes = 0, leaves = 0, cutoffs = 0, firstMoveCutoffs = 0, probes = 0, hits = 0;
+		for (Searcher searcher : searchers) {
+			nodes += searcher.nodes;
+			leaves += searcher.leaves;
+			cutoffs += searcher.cutoffs;
+			firstMoveCutoffs += searcher.firstMoveCutoffs;
+			probes += searcher.probes;
+			hits += searcher.hits;
+		}
+		statistics.record(nodes, leaves, cutoffs, firstMoveCutoffs, probes, hits, searchers[0].depthReached);
+		if (verbose) {
+			System.err.println("search: " + statistics);
+		}
+		return move;
+	}
+
+	/**
+	 * The state of one thread's search: its own copy of the board, and its own
+	 * move ordering tables and move buffers. Only the transposition table is
+	 * shared between searchers.
+	 */
+	private final class Searcher {
+
+		private final int id;
+		private final SliderBoard board;
+		private Player player;
+
+		/** Move ordering: two killer moves per ply, and cutoff history per move */
+		private final int[][] killers = new int[MAX_DEPTH + 1][2];
+		private final int[] history = new int[Engine.this.board.moveCodes()];
+
+		/** Preallocated buffers for the moves of each ply and their ordering scores */
+		private final int[][] moves = new int[MAX_DEPTH + 1][Engine.this.board.maxMoves()];
+		private final int[][] scores = new int[MAX_DEPTH + 1][Engine.this.board.maxMoves()];
+
+		/** The best move found at the root by the last call to negamax */
+		private int rootMove;
+
+		/**
+		 * The principal variation from each ply of the current search, built up
+		 * as the search returns, and the whole principal variation of the last
+		 * finished iteration, searched first by the next one while it applies.
+		 */
+		private final int[][] pv = new int[MAX_DEPTH + 1][MAX_DEPTH + 1];
+		private final int[] pvLength = new int[MAX_DEPTH + 1];
+		private final int[] principal = new int[MAX_DEPTH + 1];
+		private int principalLength;
+		private boolean followingPv;
+
+		/** Whether an iteration has finished, and whether the current one has been given up */
+		private boolean completed, aborted;
+		private int depthReached;
+
+		/** The nodes the current quiescence search may still visit */
+		private int quiescenceLeft;
+
+		/** Whether the move made at each ply is a null move, and whether null moves are off */
+		private final boolean[] nullMoves = new boolean[MAX_DEPTH + 1];
+		private boolean verifying;
+
+		/** Statistics of the current search, gathered into SearchStatistics after it */
+		private long nodes, leaves, cutoffs, firstMoveCutoffs, probes, hits;
+
+		/** Nodes, quiescence nodes included, to search before the next check of the clock */
+		private int untilClock = CLOCK_INTERVAL;
+
+		Searcher(int id) {
+			this.id = id;
+			this.board = Engine.this.board.copy();
+		}
+
+		/** Start from the principal variation another searcher found for this position */
+		void follow(Searcher searcher) {
+			principalLength = searcher.principalLength;
+			System.arraycopy(searcher.principal, 0, principal, 0, principalLength);
+		}
+
+		/** Prepare to search the player's current position */
+		void reset() {
+			board.copyFrom(Engine.this.board);
+			player = Engine.this.player;
+			nodes = leaves = cutoffs = firstMoveCutoffs = probes = hits = 0;
+			depthReached = 0;
+			principalLength = 0;
+			ageHistory();
+		}
+
+		/**
+		 * Search one ply deeper at a time until reaching maxDepth or running
+		 * out of time, and return the best move of the last search to finish.
+		 * The first iteration always finishes, so there is a move to return.
+		 * Odd-numbered helpers start one ply deeper than the rest.
+		 */
+		int iterate(int maxDepth) {
+			int bestMove = SliderBoard.NO_MOVE;
+			int score = 0;
+			completed = false;
+			aborted = false;
+			for (int depth = id > 0 ? 1 + (id & 1) : 1; depth <= maxDepth && !aborted; depth++) {
+				score = aspirationSearch(depth, score);
+				if (aborted) {
+					break;
+				}
+				completed = true;
+				depthReached = depth;
+				bestMove = rootMove;
+				principalLength = pvLength[0];
+				System.arraycopy(pv[0], 0, principal, 0, principalLength);
+				if (verbose && id == 0) {
+					System.err.println("depth " + depth + " score " + score + " nodes " + nodes
+							+ " pv " + describe(principal, principalLength));
+				}
+				if (bestMove == SliderBoard.NO_MOVE) {
+					// no moves to choose between
+					break;
+				}
+			}
+			return bestMove;
+		}
+
+		/**
+		 * Search to the given depth, first inside a window around the previous
+		 * iteration's score, widening the window on whichever side the score
+		 * falls outside it until the score lands inside.
+		 */
+		private int aspirationSearch(int depth, int previousScore) {
+			int max = INFINITY;
+			int delta = ASPIRATION_WINDOW;
+			int alpha = completed ? Math.max(previousScore - delta, -max) : -max;
+			int beta = completed ? Math.min(previousScore + delta, max) : max;
+			while (true) {
+				rootMove = SliderBoard.NO_MOVE;
+				followingPv = true;
+				int score = negamax(depth, 0, alpha, beta);
+				if (aborted) {
+					return 0;
+				}
+				delta *= 2;
+				if (score <= alpha && alpha > -max) {
+					alpha = Math.max(score - delta, -max);
+				} else if (score >= beta && beta < max) {
+					beta = Math.min(score + delta, max);
+				} else {
+					return score;
+				}
+			}
+		}
+
+		/** Whether to give up the current iteration, checked every CLOCK_INTERVAL nodes */
+		private boolean outOfTime() {
+			if (id == PONDERER) {
+				return ponderStopped || completed && clock.getCurrentThreadCpuTime() > ponderDeadline;
+			} else if (id > 0) {
+				return stopped;
+			}
+			return completed && clock.getCurrentThreadCpuTime() > deadline;
+		}
+
+		private int negamax(int depth, int ply, int alpha, int beta) {
+			nodes++;
+			if (--untilClock <= 0) {
+				untilClock = CLOCK_INTERVAL;
+				if (outOfTime()) {
+					aborted = true;
+				}
+			}
+			if (aborted) {
+				return 0;
+			}
+
+			pvLength[ply] = ply;
+			if (finished()) {
+				leaves++;
+				// with a tablebase, score the end of the game as a tablebase loss
+				return tablebase != null ? -TABLEBASE_WIN : evaluate();
+			}
+			if (tablebase != null && ply > 0) {
+				int value = probe(board, player == Player.HPLAYER);
+				if (value != 0 && value != Tablebase.NOT_FOUND) {
+					return tablebaseScore(value);
+				}
+			}
+			if (depth == 0) {
+				quiescenceLeft = quiescenceNodes;
+				return quiesce(ply, alpha, beta);
+			}
+
+			long key = hash();
+			long entry = table.probe(key);
+			probes++;
+			int hashMove = SliderBoard.NO_MOVE;
+			if (entry != TranspositionTable.MISS) {
+				hits++;
+				hashMove = TranspositionTable.move(entry);
+				if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+					int score = TranspositionTable.score(entry);
+					switch (TranspositionTable.bound(entry)) {
+					case TranspositionTable.EXACT:
+						return score;
+					case TranspositionTable.LOWER:
+						alpha = Math.max(alpha, score);
+						break;
+					case TranspositionTable.UPPER:
+						beta = Math.min(beta, score);
+						break;
+					}
+					if (alpha >= beta) {
+						return score;
+					}
+				}
+			}
+
+			if (nullMoveAllowed(depth, ply, alpha, beta)) {
+				nullMoves[ply] = true;
+				followingPv = false;
+				nextPlayer();
+				int score = -negamax(depth - 1 - nullMove, ply + 1, -beta, -beta + 1);
+				previousPlayer();
+				nullMoves[ply] = false;
+				if (aborted) {
+					return 0;
+				}
+				if (score >= beta) {
+					// confirm the cutoff without null moves, in case passing was the best move
+					verifying = true;
+					score = negamax(depth - nullMove, ply, beta - 1, beta);
+					verifying = false;
+					pvLength[ply] = ply;
+					if (aborted) {
+						return 0;
+					}
+					if (score >= beta) {
+						return beta;
+					}
+				}
+			}
+
+			int bestMove = SliderBoard.NO_MOVE;
+			int[] moves = this.moves[ply];
+			int count = getPossibleMoves(moves);
+			boolean onPv = followingPv;
+			int pvMove = onPv && ply < principalLength ? principal[ply] : SliderBoard.NO_MOVE;
+
+			if (count == 0) {
+				followingPv = onPv && ply < principalLength && pvMove == SliderBoard.NO_MOVE;
+				nextPlayer();
+				int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+				previousPlayer();
+				updatePv(SliderBoard.NO_MOVE, ply);
+				return aborted ? 0 : score;
+			} else {
+				orderMoves(moves, count, pvMove, hashMove, ply);
+
+				int alphaOriginal = alpha;
+				int score;
+				for (int k = 0; k < count; k++) {
+					int move = moves[k];
+					followingPv = onPv && move == pvMove;
+					int reduction = k >= lmrMoves && depth >= lmrDepth && scores[ply][k] < KILLER_SCORE - 1
+							&& !isForward(move) ? lmr : 0;
+					makeMove(move);
+					if (k == 0) {
+						score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+					} else {
+						// prove this move no better than the first with a null window,
+						// at first less deep if it is late and quiet, and only if that
+						// fails search it again properly
+						score = -negamax(depth - 1 - reduction, ply + 1, -alpha - 1, -alpha);
+						if (reduction > 0 && score > alpha && !aborted) {
+							score = -negamax(depth - 1, ply + 1, -alpha - 1, -alpha);
+						}
+						if (score > alpha && score < beta && !aborted) {
+							score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+						}
+					}
+					undoMove(move);
+					if (aborted) {
+						return 0;
+					}
+					if (score > alpha) {
+						alpha = score;
+						bestMove = move;
+						if (alpha >= beta) {
+							cutoffs++;
+							firstMoveCutoffs += k == 0 ? 1 : 0;
+							recordCutoff(move, depth, ply);
+							break;
+						}
+						updatePv(move, ply);
+					}
+				}
+
+				int bound = alpha >= beta ? TranspositionTable.LOWER
+						: alpha > alphaOriginal ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+				table.store(key, depth, bound, alpha, bestMove);
+
+				if (ply == 0) {
+					rootMove = bestMove;
+				}
+
+				return alpha;
+			}
+		}
+
+		/** Whether a move takes the side to move's slider forward, towards its exit */
+		private boolean isForward(int move) {
+			return (move & 3) == (player == Player.HPLAYER ? SliderBoard.RIGHT : SliderBoard.UP);
+		}
+
+		/**
+		 * Whether to try a null move at a node: not on the principal variation
+		 * (a null window), not straight after another, nor while verifying one,
+		 * only with enough depth left, and only if the side to move has enough
+		 * sliders and is already at least at beta by the evaluation.
+		 */
+		private boolean nullMoveAllowed(int depth, int ply, int alpha, int beta) {
+			if (nullMove == 0 || beta - alpha != 1 || verifying || ply == 0 || nullMoves[ply - 1]
+					|| depth <= nullMove) {
+				return false;
+			}
+			int sliders = player == Player.HPLAYER ? board.hcount : board.vcount;
+			return sliders >= NULL_MOVE_SLIDERS && evaluate() >= beta;
+		}
+
+		/**
+		 * Search only the forcing moves from here, within the node budget,
+		 * letting the side to move stand pat on the evaluation instead. The
+		 * node itself has already been counted.
+		 */
+		private int quiesce(int ply, int alpha, int beta) {
+			if (finished()) {
+				leaves++;
+				return tablebase != null ? -TABLEBASE_WIN : evaluate();
+			}
+			int standPat = evaluate();
+			if (standPat >= beta || quiescenceLeft == 0 || ply == MAX_DEPTH) {
+				leaves++;
+				return standPat;
+			}
+			alpha = Math.max(alpha, standPat);
+
+			int[] moves = this.moves[ply];
+			int count = board.getForcingMoves(player == Player.HPLAYER, moves);
+			if (count == 0) {
+				leaves++;
+				return standPat;
+			}
+			for (int k = 0; k < count && quiescenceLeft > 0; k++) {
+				int move = moves[k];
+				quiescenceLeft--;
+				nodes++;
+				untilClock--;
+				makeMove(move);
+				int score = -quiesce(ply + 1, -beta, -alpha);
+				undoMove(move);
+				if (score > alpha) {
+					alpha = score;
+					if (alpha >= beta) {
+						break;
+					}
+				}
+			}
+			return alpha;
+		}
+
+		/**
+		 * Sort moves into the order to search them: the move on the last
+		 * principal variation, the best move of any earlier search of this
+		 * position, then exits, then the killer moves of this ply, then the rest
+		 * by how often they have caused cutoffs elsewhere. Moves that tie keep
+		 * their board-scan order.
+		 */
+		private void orderMoves(int[] moves, int count, int pvMove, int hashMove, int ply) {
+			int[] scores = this.scores[ply];
+			for (int k = 0; k < count; k++) {
+				int move = moves[k];
+				int score;
+				if (move == pvMove) {
+					score = PV_MOVE_SCORE;
+				} else if (move == hashMove) {
+					score = HASH_MOVE_SCORE;
+				} else if (board.isExit(move)) {
+					score = EXIT_SCORE;
+				} else if (move == killers[ply][0]) {
+					score = KILLER_SCORE;
+				} else if (move == killers[ply][1]) {
+					score = KILLER_SCORE - 1;
+				} else {
+					score = history[move];
+				}
+
+				// insertion sort, keeping moves of equal score in order
+				int l = k;
+				for (; l > 0 && scores[l - 1] < score; l--) {
+					scores[l] = scores[l - 1];
+					moves[l] = moves[l - 1];
+				}
+				scores[l] = score;
+				moves[l] = move;
+			}
+		}
+
+		/** Make the principal variation from this ply the given move, then the child's */
+		private void updatePv(int move, int ply) {
+			pv[ply][ply] = move;
+			System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+			pvLength[ply] = pvLength[ply + 1];
+		}
+
+		/** Remember a quiet move that caused a beta cutoff, for ordering later searches */
+		private void recordCutoff(int move, int depth, int ply) {
+			if (board.isExit(move)) {
+				return;
+			}
+			if (killers[ply][0] != move) {
+				killers[ply][1] = killers[ply][0];
+				killers[ply][0] = move;
+			}
+			history[move] += depth * depth;
+			if (history[move] >= KILLER_SCORE) {
+				ageHistory();
+			}
+		}
+
+		private void ageHistory() {
+			for (int code = 0; code < history.length; code++) {
+				history[code] /= 2;
+			}
+		}
+
+		private long hash() {
+			return board.key(player == Player.HPLAYER);
+		}
+
+		private int getPossibleMoves(int[] moves) {
+			return board.getPossibleMoves(player == Player.HPLAYER, moves);
+		}
+
+		private boolean finished() {
+			return board.finished();
+		}
+
+		private int evaluate() {
+			assert board.verify() : "incremental evaluation out of step";
+			return evaluator.evaluate(board, player == Player.HPLAYER);
+		}
+
+		private void makeMove(int move) {
+			nextPlayer();
+			if (move != SliderBoard.NO_MOVE) {
+				board.makeMove(move);
+			}
+		}
+
+		private void undoMove(int move) {
+			previousPlayer();
+			if (move != SliderBoard.NO_MOVE) {
+				board.undoMove(move);
+			}
+		}
+
+		private void nextPlayer() {
+			player = player == Player.HPLAYER ? Player.VPLAYER : Player.HPLAYER;
+		}
+
+		private void previousPlayer() {
+			nextPlayer();
+		}
+	}
+}
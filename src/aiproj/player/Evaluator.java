@@ -0,0 +1,42 @@
+package aiproj.player;
+
+/**
+ * Evaluation for the Engine, as a table: a weight for each square, for each
+ * slider type, plus exitWeight for each slider that has left the board. The
+ * board keeps the sum of its sliders' square weights up to date as moves are
+ * made and undone (see SliderBoard.setWeights), so evaluating a position only
+ * adds up a few terms. A side's score counts for nothing once the other side
+ * has won.
+ *
+ * The players differ only in the tables they build, so this class is final
+ * and the Engine's call to evaluate() stays monomorphic, for the JIT to
+ * inline.
+ */
+final class Evaluator {
+
+	final int dimension;
+
+	/** The weight of each square for H's sliders and for V's, indexed by square number */
+	final int[] hweights, vweights;
+
+	/** The score for each slider off the board, beyond the first */
+	final int exitWeight;
+
+	Evaluator(int dimension, int[] hweights, int[] vweights, int exitWeight) {
+		this.dimension = dimension;
+		this.hweights = hweights;
+		this.vweights = vweights;
+		this.exitWeight = exitWeight;
+	}
+
+	/** The score of the board for the given side to move */
+	int evaluate(SliderBoard board, boolean horizontal) {
+		int hscore = board.hscore + exitWeight * (dimension - board.hcount - 1);
+		int vscore = board.vscore + exitWeight * (dimension - board.vcount - 1);
+
+		hscore = board.vcount == 0 ? 0 : hscore;
+		vscore = board.hcount == 0 ? 0 : vscore;
+
+		return horizontal ? hscore - vscore : vscore - hscore;
+	}
+}
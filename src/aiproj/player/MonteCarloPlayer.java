@@ -0,0 +1,101 @@
+package aiproj.player;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import aiproj.slider.SliderPlayer;
+import aiproj.slider.Move;
+
+/**
+ * Monte-Carlo tree search player (see MonteCarloTree), configured by the
+ * montecarlo.* system properties. Where the negamax players' cost grows
+ * exponentially with depth, this one only needs playouts, so it scales to
+ * large boards. Each move is searched with a new tree.
+ *
+ * By default each move gets PLAYOUTS playouts (montecarlo.playouts).
+ * Setting montecarlo.moveTime or montecarlo.gameTime instead searches for
+ * that much CPU time (see SearchPolicy), measured on the calling thread as
+ * the Referee measures it, for comparisons at equal CPU time, for instance
+ * java -Dmontecarlo.moveTime=100 -Djoshua.moveTime=100 aiproj.slider.Referee
+ * -headless 8 aiproj.player.MonteCarloPlayer aiproj.player.JoshuaPlayer
+ *
+ * montecarlo.threads, above one, runs playouts in parallel on the one tree;
+ * montecarlo.nodes is the most nodes the tree may hold (TREE_NODES).
+ * montecarlo.verbose prints the most visited moves of each search to
+ * standard error. Each search's tree size, playouts and depth are published
+ * over JMX (see SearchStatistics) as its nodes, leaves and depth.
+ */
+public class MonteCarloPlayer implements SliderPlayer {
+
+	private static final int PLAYOUTS = 20000;
+	private static final int TREE_NODES = 1 << 20;
+
+	private int dimension;
+	private SliderBoard board;
+	private boolean horizontal;
+	private MonteCarloTree tree;
+	private SearchPolicy policy;
+	private int playouts;
+	private boolean verbose;
+	private SearchStatistics statistics;
+
+	private final ThreadMXBean clock = ManagementFactory.getThreadMXBean();
+	private long timeUsed;
+
+	public void init(int dimension, String board, char player) {
+		this.dimension = dimension;
+		this.board = SliderBoard.create(dimension, board);
+		this.horizontal = player == 'H';
+		this.policy = new SearchPolicy("montecarlo", 0, 0, 0);
+		this.playouts = Math.max(1, Integer.getInteger("montecarlo.playouts", PLAYOUTS));
+		this.verbose = Boolean.getBoolean("montecarlo.verbose");
+		int threads = Math.max(1, Integer.getInteger("montecarlo.threads", 1));
+		int nodes = Math.max(this.board.maxMoves() + 1, Integer.getInteger("montecarlo.nodes", TREE_NODES));
+		this.tree = new MonteCarloTree(this.board, nodes, threads);
+		this.statistics = SearchStatistics.register("MonteCarloPlayer", player);
+		this.timeUsed = 0;
+	}
+
+	public void update(Move move) {
+		long start = clock.getCurrentThreadCpuTime();
+		if (move != null) {
+			board.makeMove(board.encodeMove(dimension - move.j - 1, move.i, move.d));
+		}
+		timeUsed += clock.getCurrentThreadCpuTime() - start;
+	}
+
+	public Move move() {
+		long start = clock.getCurrentThreadCpuTime();
+		int move;
+		if (policy.timed()) {
+			move = tree.search(board, horizontal, Integer.MAX_VALUE,
+					start + policy.budget(timeUsed, board.distance(horizontal)));
+		} else {
+			move = tree.search(board, horizontal, playouts, Long.MAX_VALUE);
+		}
+		statistics.record(tree.getNodeCount(), tree.getPlayoutCount(), 0, 0, 0, 0, tree.getDepth());
+		if (verbose) {
+			System.err.println("playouts " + tree.getPlayoutCount() + " nodes " + tree.getNodeCount()
+					+ " depth " + tree.getDepth() + ": " + tree.describe(this::describe));
+		}
+		if (move != SliderBoard.NO_MOVE) {
+			board.makeMove(move);
+		}
+		timeUsed += clock.getCurrentThreadCpuTime() - start;
+		return move == SliderBoard.NO_MOVE ? null : revertMove(move);
+	}
+
+	/** The number of playouts in the last search, over all threads */
+	public long getPlayoutCount() {
+		return tree.getPlayoutCount();
+	}
+
+	private Move revertMove(int move) {
+		Move rotated = board.decodeMove(move);
+		return new Move(rotated.j, dimension - rotated.i - 1, rotated.d);
+	}
+
+	/** A move in the Referee's coordinates, for logging */
+	private String describe(int move) {
+		return move == SliderBoard.NO_MOVE ? "pass" : revertMove(move).toString();
+	}
+}
@@ -0,0 +1,369 @@
+package aiproj.player;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntFunction;
+
+/**
+ * A Monte-Carlo search tree (UCT) for MonteCarloPlayer, searched by one or
+ * more threads at once (tree parallelism).
+ *
+ * The nodes are a fixed pool of parallel arrays, allocated once: each node's
+ * move, the index of its first child and its number of children, and its
+ * visits and rewards, the latter counted in half points (two for a win, one
+ * for a draw) for the side that made the node's move. A node's children are
+ * contiguous, claimed from the pool in one step when it is expanded; once
+ * the pool is full the tree stops growing and the search goes on with
+ * playouts from its leaves.
+ *
+ * Each playout selects a path down the tree by UCB1, expands the leaf it
+ * reaches once that has been visited EXPAND_VISITS times, and plays the game
+ * out at random from there. A node's visit is counted on the way down and
+ * its reward only on the way back, so until a playout returns its path
+ * scores as a loss (a virtual loss), steering the other threads down other
+ * paths meanwhile. Every count is updated atomically, and a node's children
+ * are published by setting its number of children last, so the threads
+ * share the tree without locks.
+ *
+ * Playouts allocate nothing: each thread has its own board, move buffer,
+ * path and random number generator. Each playout move is a random legal
+ * move, biased towards the forward ones: up to PLAYOUT_TRIES are drawn, and
+ * the first forward one taken. A playout still going after PLAYOUT_LIMIT
+ * moves per square is scored by which side is nearer to clearing its
+ * sliders (see SliderBoard.distance).
+ */
+final class MonteCarloTree {
+
+	/** Visits to a leaf before it is expanded */
+	private static final int EXPAND_VISITS = 2;
+
+	/** Random moves drawn per playout move, looking for a forward one */
+	private static final int PLAYOUT_TRIES = 12;
+
+	/** Playout moves per square of the board before a playout is scored as it stands */
+	private static final int PLAYOUT_LIMIT = 4;
+
+	/** The UCB1 exploration constant */
+	private static final double EXPLORATION = Math.sqrt(2);
+
+	/** The longest path down the tree a playout follows */
+	private static final int MAX_PATH = 256;
+
+	/** Playouts between checks of the clock */
+	private static final int CLOCK_INTERVAL = 8;
+
+	/** The number of children of a node not yet expanded, and of one being expanded */
+	private static final int UNEXPANDED = -1, EXPANDING = -2;
+
+	/** Rewards, in half points */
+	private static final int WIN = 2, DRAW = 1;
+
+	/**
+	 * The threads the helpers' playouts run on, shared by all trees, as the
+	 * Engine shares its own: threads are started as needed, and end once idle
+	 * for a minute.
+	 */
+	private static final ExecutorService HELPERS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "MonteCarloTree helper");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final int capacity;
+	private final int[] moves, firstChild;
+	private final AtomicIntegerArray children, visits, rewards;
+	private final AtomicInteger size = new AtomicInteger();
+
+	/** Worker[0] runs on the calling thread, the rest on the helper threads */
+	private final Worker[] workers;
+	private final ThreadMXBean clock = ManagementFactory.getThreadMXBean();
+
+	/** The position being searched */
+	private SliderBoard root;
+	private boolean horizontal;
+
+	/** The playouts started so far, and the most to start */
+	private final AtomicInteger started = new AtomicInteger();
+	private int playouts;
+
+	/** Set to stop the helper threads' playouts */
+	private volatile boolean stopped;
+
+	/** A tree of at most capacity nodes, for boards like the given one, searched by threads threads */
+	MonteCarloTree(SliderBoard board, int capacity, int threads) {
+		this.capacity = capacity;
+		this.moves = new int[capacity];
+		this.firstChild = new int[capacity];
+		this.children = new AtomicIntegerArray(capacity);
+		this.visits = new AtomicIntegerArray(capacity);
+		this.rewards = new AtomicIntegerArray(capacity);
+		this.workers = new Worker[threads];
+		for (int k = 0; k < threads; k++) {
+			workers[k] = new Worker(board, k);
+		}
+	}
+
+	/**
+	 * Search the given position with a new tree, for at most the given number
+	 * of playouts and until the calling thread's CPU clock reaches the
+	 * deadline, and return the most visited move: NO_MOVE for a pass.
+	 */
+	int search(SliderBoard board, boolean horizontal, int playouts, long deadline) {
+		this.root = board;
+		this.horizontal = horizontal;
+		this.playouts = playouts;
+		started.set(0);
+		stopped = false;
+		size.set(1);
+		initialize(0, SliderBoard.NO_MOVE);
+		// the root always has children, so there is a move to return
+		workers[0].board.copyFrom(board);
+		workers[0].expand(0, horizontal);
+
+		Future<?>[] futures = new Future<?>[workers.length - 1];
+		for (int k = 1; k < workers.length; k++) {
+			Worker helper = workers[k];
+			futures[k - 1] = HELPERS.submit(() -> helper.run(Long.MAX_VALUE));
+		}
+		workers[0].run(deadline);
+		stopped = true;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("helper playouts failed", e);
+			}
+		}
+		return bestMove();
+	}
+
+	/** The move of the root's most visited child */
+	private int bestMove() {
+		int count = children.get(0);
+		int best = SliderBoard.NO_MOVE, bestVisits = -1;
+		for (int child = firstChild[0]; child < firstChild[0] + count; child++) {
+			if (visits.get(child) > bestVisits) {
+				bestVisits = visits.get(child);
+				best = moves[child];
+			}
+		}
+		return best;
+	}
+
+	/** The number of playouts in the last search, over all threads */
+	long getPlayoutCount() {
+		long count = 0;
+		for (Worker worker : workers) {
+			count += worker.playouts;
+		}
+		return count;
+	}
+
+	/** The number of nodes in the tree */
+	int getNodeCount() {
+		return Math.min(size.get(), capacity);
+	}
+
+	/** The longest path down the tree taken in the last search */
+	int getDepth() {
+		int depth = 0;
+		for (Worker worker : workers) {
+			depth = Math.max(depth, worker.depth);
+		}
+		return depth;
+	}
+
+	/** The root's children as move, visits and win rate, most visited first, for logging */
+	String describe(IntFunction<String> describeMove) {
+		int count = Math.max(0, children.get(0));
+		Integer[] order = new Integer[count];
+		for (int k = 0; k < count; k++) {
+			order[k] = firstChild[0] + k;
+		}
+		Arrays.sort(order, (a, b) -> visits.get(b) - visits.get(a));
+		StringBuilder s = new StringBuilder();
+		for (int k = 0; k < Math.min(count, 5); k++) {
+			int child = order[k];
+			s.append(k == 0 ? "" : ", ").append(describeMove.apply(moves[child])).append(' ')
+					.append(visits.get(child)).append(String.format(" %.0f%%",
+							50.0 * rewards.get(child) / Math.max(1, visits.get(child))));
+		}
+		return s.toString();
+	}
+
+	/** Set up a new node */
+	private void initialize(int node, int move) {
+		moves[node] = move;
+		children.set(node, UNEXPANDED);
+		visits.set(node, 0);
+		rewards.set(node, 0);
+	}
+
+	/** Claim count contiguous new nodes, returning the first, or -1 if the pool is full */
+	private int allocate(int count) {
+		if (size.get() + count > capacity) {
+			return -1;
+		}
+		int first = size.getAndAdd(count);
+		return first + count <= capacity ? first : -1;
+	}
+
+	/** The playouts of one thread, with their own board and buffers */
+	private final class Worker {
+
+		private final int id;
+		private final SliderBoard board;
+		private final int[] moveBuffer;
+		private final int[] path = new int[MAX_PATH];
+		private long random;
+
+		/** Statistics of the current search */
+		private long playouts;
+		private int depth;
+
+		Worker(SliderBoard board, int id) {
+			this.id = id;
+			this.board = board.copy();
+			this.moveBuffer = new int[board.maxMoves()];
+			this.random = 0x9E3779B97F4A7C15L * (id + 1);
+		}
+
+		/** Run playouts until the search is out of playouts, or stopped, or past the deadline */
+		void run(long deadline) {
+			playouts = 0;
+			depth = 0;
+			while (!stopped && started.getAndIncrement() < MonteCarloTree.this.playouts) {
+				playout();
+				playouts++;
+				if (id == 0 && playouts % CLOCK_INTERVAL == 0 && clock.getCurrentThreadCpuTime() > deadline) {
+					break;
+				}
+			}
+		}
+
+		/** Select a path down the tree, expanding its leaf if due, play the game out and back up the result */
+		private void playout() {
+			board.copyFrom(root);
+			boolean side = horizontal;
+			int node = 0, length = 0, passes = 0;
+			path[length++] = node;
+			visits.incrementAndGet(node);
+			// two passes in a row end the game, as a draw
+			while (length < MAX_PATH && !board.finished() && passes < 2) {
+				int count = children.get(node);
+				if (count < 0) {
+					if (count == EXPANDING || visits.get(node) < EXPAND_VISITS || !expand(node, side)) {
+						break;
+					}
+					count = children.get(node);
+				}
+				node = select(node, count);
+				visits.incrementAndGet(node);
+				path[length++] = node;
+				if (moves[node] != SliderBoard.NO_MOVE) {
+					board.makeMove(moves[node]);
+					passes = 0;
+				} else {
+					passes++;
+				}
+				side = !side;
+			}
+			depth = Math.max(depth, length - 1);
+
+			int winner = passes < 2 ? playOut(side, passes) : 0;
+			// the move into the node at path[k] was made by the side to move at path[k - 1]
+			for (int k = 1; k < length; k++) {
+				int mover = (k & 1) == 1 == horizontal ? 1 : -1;
+				rewards.addAndGet(path[k], winner == 0 ? DRAW : winner == mover ? WIN : 0);
+			}
+		}
+
+		/** Give a leaf its children, unless another thread is or the pool is full */
+		private boolean expand(int node, boolean side) {
+			if (!children.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+				return false;
+			}
+			int count = board.getPossibleMoves(side, moveBuffer);
+			if (count == 0) {
+				moveBuffer[count++] = SliderBoard.NO_MOVE;
+			}
+			int first = allocate(count);
+			if (first < 0) {
+				children.set(node, UNEXPANDED);
+				return false;
+			}
+			for (int k = 0; k < count; k++) {
+				initialize(first + k, moveBuffer[k]);
+			}
+			firstChild[node] = first;
+			children.set(node, count);
+			return true;
+		}
+
+		/** The child with the highest upper confidence bound, or the first not yet visited */
+		private int select(int node, int count) {
+			double log = Math.log(visits.get(node));
+			int best = firstChild[node];
+			double bestBound = Double.NEGATIVE_INFINITY;
+			for (int child = firstChild[node]; child < firstChild[node] + count; child++) {
+				int n = visits.get(child);
+				if (n == 0) {
+					return child;
+				}
+				double bound = rewards.get(child) / (2.0 * n) + EXPLORATION * Math.sqrt(log / n);
+				if (bound > bestBound) {
+					bestBound = bound;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Play random moves from the board, side to move first, after the given
+		 * number of passes in a row: 1 if H wins, -1 if V does, 0 for a draw
+		 */
+		private int playOut(boolean side, int passes) {
+			int limit = PLAYOUT_LIMIT * board.dimension * board.dimension;
+			for (int step = 0; step < limit && !board.finished(); step++) {
+				int count = board.getPossibleMoves(side, moveBuffer);
+				if (count > 0) {
+					board.makeMove(choose(count, side));
+					passes = 0;
+				} else if (++passes > 1) {
+					return 0;
+				}
+				side = !side;
+			}
+			if (board.finished()) {
+				return board.hcount == 0 ? 1 : -1;
+			}
+			return Integer.signum(board.distance(false) - board.distance(true));
+		}
+
+		/** A random move from the buffer, preferring a forward one */
+		private int choose(int count, boolean side) {
+			int forward = side ? SliderBoard.RIGHT : SliderBoard.UP;
+			int move = 0;
+			for (int k = 0; k < PLAYOUT_TRIES; k++) {
+				move = moveBuffer[nextInt(count)];
+				if ((move & 3) == forward) {
+					break;
+				}
+			}
+			return move;
+		}
+
+		/** A random number in [0, bound), by xorshift */
+		private int nextInt(int bound) {
+			random ^= random << 13;
+			random ^= random >>> 7;
+			random ^= random << 17;
+			return (int) (((random >>> 32) * bound) >>> 32);
+		}
+	}
+}
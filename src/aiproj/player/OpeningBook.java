@@ -0,0 +1,171 @@
+package aiproj.player;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import aiproj.slider.Move;
+import aiproj.slider.Referee;
+
+/**
+ * A book of deep-searched best moves for the opening positions of one board
+ * dimension, stored as a file of (position hash, move) records sorted by hash
+ * and memory-mapped for lookup. The positions are those a player of either
+ * side can reach in its first few moves from every starting layout the
+ * Referee can deal, whatever the opponent replies.
+ *
+ * Run this class to generate a book:
+ * java aiproj.player.OpeningBook N file [moves [depth]]
+ * to search each side's first 'moves' moves (default 2) to 'depth' plies
+ * (default 14) on boards of dimension N.
+ */
+final class OpeningBook {
+
+	private static final int MAGIC = 0x534C424B; // "SLBK"
+	private static final int VERSION = 1;
+	private static final int HEADER = 16;
+	private static final int RECORD = 10; // long hash, short move
+
+	private final ByteBuffer buffer;
+	private final int count;
+
+	private OpeningBook(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.count = buffer.getInt(12);
+	}
+
+	/**
+	 * Map a book file into memory.
+	 *
+	 * @throws IOException if the file cannot be read, or is not a book for
+	 * boards of the given dimension
+	 */
+	static OpeningBook open(String file, int dimension) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (channel.size() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException(file + " is not an opening book");
+			}
+			if (buffer.getInt(8) != dimension) {
+				throw new IOException(file + " is a book for dimension " + buffer.getInt(8));
+			}
+			if (channel.size() != HEADER + (long) buffer.getInt(12) * RECORD) {
+				throw new IOException(file + " is truncated");
+			}
+			return new OpeningBook(buffer);
+		}
+	}
+
+	/** The book move for the position with the given hash, or NO_MOVE */
+	int probe(long key) {
+		int low = 0, high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long found = buffer.getLong(HEADER + middle * RECORD);
+			if (found < key) {
+				low = middle + 1;
+			} else if (found > key) {
+				high = middle - 1;
+			} else {
+				return buffer.getShort(HEADER + middle * RECORD + 8) & 0xFFFF;
+			}
+		}
+		return BitBoard.NO_MOVE;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java aiproj.player.OpeningBook N file [moves [depth]]");
+			System.exit(1);
+		}
+		int dimension = Integer.parseInt(args[0]);
+		int moves = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		int depth = args.length > 3 ? Integer.parseInt(args[3]) : 14;
+
+		Generator generator = new Generator(dimension, depth);
+		List<String> layouts = Referee.layouts(dimension);
+		for (int k = 0; k < layouts.size(); k++) {
+			BitBoard board = new BitBoard(dimension, layouts.get(k));
+			generator.expand(board, true, true, moves);
+			generator.expand(board, true, false, moves);
+			System.err.println("layout " + (k + 1) + "/" + layouts.size() + ": "
+					+ generator.book.size() + " positions");
+		}
+		generator.write(args[1]);
+	}
+
+	/** Searches the positions of a book and collects their best moves */
+	private static final class Generator {
+
+		private final int dimension, depth;
+		private final Map<Long, Integer> book = new HashMap<Long, Integer>();
+		private final int[] moves = new int[BitBoard.MAX_MOVES];
+
+		Generator(int dimension, int depth) {
+			this.dimension = dimension;
+			this.depth = depth;
+		}
+
+		/**
+		 * Add the positions the book side can reach in its next 'moves' moves
+		 * from the given position, whatever its opponent plays.
+		 */
+		void expand(BitBoard board, boolean horizontalToMove, boolean horizontal, int moves) {
+			if (board.finished() || moves == 0 && horizontalToMove == horizontal) {
+				return;
+			}
+
+			if (horizontalToMove == horizontal) {
+				long key = board.key(horizontal);
+				Integer move = book.get(key);
+				if (move == null) {
+					move = search(board, horizontal);
+					book.put(key, move);
+				}
+				BitBoard next = new BitBoard(board);
+				if (move != BitBoard.NO_MOVE) {
+					next.makeMove(move);
+				}
+				expand(next, !horizontalToMove, horizontal, moves - 1);
+			} else {
+				int count = board.getPossibleMoves(horizontalToMove, this.moves);
+				int[] replies = Arrays.copyOf(this.moves, count);
+				if (count == 0) {
+					expand(board, !horizontalToMove, horizontal, moves);
+				}
+				for (int reply : replies) {
+					BitBoard next = new BitBoard(board);
+					next.makeMove(reply);
+					expand(next, !horizontalToMove, horizontal, moves);
+				}
+			}
+		}
+
+		private int search(BitBoard board, boolean horizontal) {
+			JoshuaPlayer player = new JoshuaPlayer();
+			player.init(dimension, board.toString(), horizontal ? 'H' : 'V');
+			Move move = player.getBestMove(depth);
+			return move == null ? BitBoard.NO_MOVE : BitBoard.encode(move.i, move.j, move.d);
+		}
+
+		void write(String file) throws IOException {
+			List<Long> keys = new ArrayList<Long>(book.keySet());
+			keys.removeIf(key -> book.get(key) == BitBoard.NO_MOVE);
+			Collections.sort(keys);
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(dimension);
+				out.writeInt(keys.size());
+				for (long key : keys) {
+					out.writeLong(key);
+					out.writeShort(book.get(key));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package aiproj.player;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import aiproj.slider.Move;
+import aiproj.slider.Referee;
+
+/**
+ * A set of positions from games, each labelled with the game's result, for
+ * tuning evaluation weights (see Tuner). The positions are of one board
+ * dimension up to BitBoard.MAX_DIMENSION, stored as a file of fixed-size
+ * records and memory-mapped for reading: each record is the position's H
+ * sliders, V sliders and blocks, as BitBoard sets, and a byte holding the
+ * side to move (bit 0 set for V) and the result for H plus one (bits 1-2).
+ *
+ * Run this class to generate a set:
+ * java aiproj.player.PositionSet N file games [depth]
+ * to play 'games' games of Engine self-play on boards of dimension N, one
+ * from each starting layout in turn (see Referee.layouts()), in parallel.
+ * Each game opens with RANDOM_PLIES random moves, for variety, and then
+ * searches each move to 'depth' plies (default 4) with JoshuaPlayer's
+ * evaluation, including any weights file joshua.weights names; the engines
+ * are otherwise configured by the positionset.* system properties (see
+ * Engine). Every position from the end of the opening on is recorded, and a
+ * game still going after MAX_PLIES moves per square counts as a draw.
+ */
+final class PositionSet {
+
+	private static final int MAGIC = 0x534C5053; // "SLPS"
+	private static final int VERSION = 1;
+	private static final int HEADER = 16;
+	private static final int RECORD = 25; // long hsliders, long vsliders, long blocks, byte flags
+
+	/** Game results, for H */
+	static final int H_WINS = 1, DRAW = 0, V_WINS = -1;
+
+	private static final int RANDOM_PLIES = 6;
+	private static final int MAX_PLIES = 4;
+
+	final int dimension;
+	final int count;
+	private final ByteBuffer buffer;
+
+	private PositionSet(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.dimension = buffer.getInt(8);
+		this.count = buffer.getInt(12);
+	}
+
+	/**
+	 * Map a position set file into memory.
+	 *
+	 * @throws IOException if the file cannot be read, or is not a position set
+	 */
+	static PositionSet open(String file) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (channel.size() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException(file + " is not a position set");
+			}
+			if (channel.size() != HEADER + (long) buffer.getInt(12) * RECORD) {
+				throw new IOException(file + " is truncated");
+			}
+			return new PositionSet(buffer);
+		}
+	}
+
+	long hsliders(int k) {
+		return buffer.getLong(HEADER + k * RECORD);
+	}
+
+	long vsliders(int k) {
+		return buffer.getLong(HEADER + k * RECORD + 8);
+	}
+
+	long blocks(int k) {
+		return buffer.getLong(HEADER + k * RECORD + 16);
+	}
+
+	/** Whether H is to move in position k */
+	boolean horizontal(int k) {
+		return (buffer.get(HEADER + k * RECORD + 24) & 1) == 0;
+	}
+
+	/** The result for H of the game position k is from: H_WINS, DRAW or V_WINS */
+	int result(int k) {
+		return (buffer.get(HEADER + k * RECORD + 24) >>> 1) - 1;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("usage: java aiproj.player.PositionSet N file games [depth]");
+			System.exit(1);
+		}
+		int dimension = Integer.parseInt(args[0]);
+		int games = Integer.parseInt(args[2]);
+		int depth = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+		if (dimension > BitBoard.MAX_DIMENSION) {
+			throw new IllegalArgumentException("unsupported board dimension: " + dimension);
+		}
+
+		int count;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[1])))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(dimension);
+			out.writeInt(0); // the count, once known
+			Generator generator = new Generator(dimension, depth, out);
+			IntStream.range(0, games).parallel().forEach(generator::play);
+			count = generator.count();
+		}
+		try (RandomAccessFile file = new RandomAccessFile(args[1], "rw")) {
+			file.seek(12);
+			file.writeInt(count);
+		}
+		System.err.println(games + " games, " + count + " positions");
+	}
+
+	/** Plays the games of a set and writes out their positions */
+	private static final class Generator {
+
+		private final int dimension, depth;
+		private final List<String> layouts;
+		private final DataOutputStream out;
+		private final AtomicInteger played = new AtomicInteger();
+		private int count;
+
+		Generator(int dimension, int depth, DataOutputStream out) {
+			this.dimension = dimension;
+			this.depth = depth;
+			this.layouts = Referee.layouts(dimension);
+			this.out = out;
+		}
+
+		/** Play the given game, from a layout and random opening of its own, and write its positions */
+		void play(int game) {
+			Random random = new Random(game);
+			BitBoard board = new BitBoard(dimension, layouts.get(game % layouts.size()));
+			int[] moves = new int[BitBoard.MAX_MOVES];
+			boolean horizontal = true;
+			for (int ply = 0; ply < RANDOM_PLIES && !board.finished(); ply++) {
+				int count = board.getPossibleMoves(horizontal, moves);
+				if (count > 0) {
+					board.makeMove(moves[random.nextInt(count)]);
+				}
+				horizontal = !horizontal;
+			}
+
+			Weights weights = Weights.forPlayer("PositionSet", "joshua", JoshuaPlayer.defaultWeights(dimension));
+			SearchPolicy policy = new SearchPolicy("positionset", depth, depth, 0);
+			Engine h = new Engine("PositionSet", "positionset", board.copy(), 'H', weights.evaluator(board), policy);
+			Engine v = new Engine("PositionSet", "positionset", board.copy(), 'V', weights.evaluator(board), policy);
+
+			int limit = MAX_PLIES * dimension * dimension;
+			long[] positions = new long[3 * limit];
+			boolean[] sides = new boolean[limit];
+			int plies = 0;
+			for (; plies < limit && !board.finished(); plies++) {
+				positions[3 * plies] = board.hsliders;
+				positions[3 * plies + 1] = board.vsliders;
+				positions[3 * plies + 2] = board.blocks;
+				sides[plies] = horizontal;
+				Move move = (horizontal ? h : v).move();
+				(horizontal ? v : h).update(move);
+				if (move != null) {
+					board.makeMove(board.encodeMove(dimension - move.j - 1, move.i, move.d));
+				}
+				horizontal = !horizontal;
+			}
+			int result = board.hcount == 0 ? H_WINS : board.vcount == 0 ? V_WINS : DRAW;
+
+			synchronized (this) {
+				try {
+					for (int k = 0; k < plies; k++) {
+						out.writeLong(positions[3 * k]);
+						out.writeLong(positions[3 * k + 1]);
+						out.writeLong(positions[3 * k + 2]);
+						out.writeByte((sides[k] ? 0 : 1) | result + 1 << 1);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				count += plies;
+			}
+			if (played.incrementAndGet() % 1000 == 0) {
+				System.err.println(played + " games");
+			}
+		}
+
+		synchronized int count() {
+			return count;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package aiproj.player;
+
+/**
+ * How deep the Engine searches each move. By default each move is searched
+ * to a fixed depth, or to a deeper one once few sliders remain. Setting
+ * either of the system properties prefix.moveTime (CPU milliseconds per move)
+ * or prefix.gameTime (CPU milliseconds per game) instead searches as deep as
+ * the budget allows.
+ */
+final class SearchPolicy {
+
+	private final int depth, lateGameDepth, lateGameSliders;
+
+	/** CPU time budgets in nanoseconds, zero when unlimited */
+	private final long moveTime, gameTime;
+
+	/**
+	 * Search to depth, or to lateGameDepth once at most lateGameSliders
+	 * sliders remain, unless properties.moveTime or properties.gameTime is set
+	 */
+	SearchPolicy(String properties, int depth, int lateGameDepth, int lateGameSliders) {
+		this.depth = depth;
+		this.lateGameDepth = lateGameDepth;
+		this.lateGameSliders = lateGameSliders;
+		this.moveTime = Long.getLong(properties + ".moveTime", 0) * 1000000;
+		this.gameTime = Long.getLong(properties + ".gameTime", 0) * 1000000;
+	}
+
+	/** Whether moves are searched to a time budget rather than a depth */
+	boolean timed() {
+		return moveTime > 0 || gameTime > 0;
+	}
+
+	/** The depth to search the board to, when not timed */
+	int depth(SliderBoard board) {
+		return board.sliderCount() <= lateGameSliders ? lateGameDepth : depth;
+	}
+
+	/**
+	 * CPU time to spend on this move, sharing what is left of the game budget
+	 * between at least movesLeft moves
+	 */
+	long budget(long timeUsed, int movesLeft) {
+		long budget = moveTime > 0 ? moveTime : Long.MAX_VALUE;
+		if (gameTime > 0) {
+			budget = Math.min(budget, Math.max(0, gameTime - timeUsed) / Math.max(1, movesLeft));
+		}
+		return budget;
+	}
+}
@@ -0,0 +1,137 @@
+package aiproj.player;
+
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+
+/**
+ * Search statistics of one player, per move and per game, published as a
+ * JMX MBean named aiproj.player:type=SearchStatistics,player=<class>,side=<H|V>.
+ * A new player replaces the MBean of the last player of its class and side,
+ * so with several games at once it shows the most recently started one.
+ * 
+ * The searches count into plain fields of their own, each on one thread;
+ * only their totals are recorded here, once per move.
+ */
+public final class SearchStatistics implements SearchStatisticsMBean {
+
+	private int moves;
+	private long lastNodes, lastLeaves, lastCutoffs, lastFirstMoveCutoffs, lastProbes, lastHits;
+	private int lastDepth;
+	private long gameNodes, gameLeaves, gameCutoffs, gameFirstMoveCutoffs, gameProbes, gameHits;
+	private long gameDepths;
+	private double gameBranchingFactors;
+
+	/** Register the statistics of a new player, replacing those of the last such player */
+	static SearchStatistics register(String player, char side) {
+		SearchStatistics statistics = new SearchStatistics();
+		try {
+			ObjectName name = new ObjectName("aiproj.player:type=SearchStatistics,player=" + player + ",side=" + side);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			synchronized (SearchStatistics.class) {
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+				server.registerMBean(statistics, name);
+			}
+		} catch (JMException e) {
+			System.err.println(player + ": not publishing search statistics: " + e.getMessage());
+		}
+		return statistics;
+	}
+
+	/** Record the totals of one move's search */
+	synchronized void record(long nodes, long leaves, long cutoffs, long firstMoveCutoffs,
+			long probes, long hits, int depth) {
+		moves++;
+		lastNodes = nodes;
+		lastLeaves = leaves;
+		lastCutoffs = cutoffs;
+		lastFirstMoveCutoffs = firstMoveCutoffs;
+		lastProbes = probes;
+		lastHits = hits;
+		lastDepth = depth;
+		gameNodes += nodes;
+		gameLeaves += leaves;
+		gameCutoffs += cutoffs;
+		gameFirstMoveCutoffs += firstMoveCutoffs;
+		gameProbes += probes;
+		gameHits += hits;
+		gameDepths += depth;
+		gameBranchingFactors += branchingFactor(nodes, depth);
+	}
+
+	private static double branchingFactor(long nodes, int depth) {
+		return depth == 0 ? 0 : Math.pow(nodes, 1.0 / depth);
+	}
+
+	private static double rate(long count, long total) {
+		return total == 0 ? 0 : (double) count / total;
+	}
+
+	public synchronized int getMoves() {
+		return moves;
+	}
+
+	public synchronized long getLastNodes() {
+		return lastNodes;
+	}
+
+	public synchronized long getLastLeaves() {
+		return lastLeaves;
+	}
+
+	public synchronized long getLastCutoffs() {
+		return lastCutoffs;
+	}
+
+	public synchronized double getLastFirstMoveCutoffRate() {
+		return rate(lastFirstMoveCutoffs, lastCutoffs);
+	}
+
+	public synchronized double getLastBranchingFactor() {
+		return branchingFactor(lastNodes, lastDepth);
+	}
+
+	public synchronized int getLastDepth() {
+		return lastDepth;
+	}
+
+	public synchronized double getLastTableHitRate() {
+		return rate(lastHits, lastProbes);
+	}
+
+	public synchronized long getGameNodes() {
+		return gameNodes;
+	}
+
+	public synchronized long getGameLeaves() {
+		return gameLeaves;
+	}
+
+	public synchronized long getGameCutoffs() {
+		return gameCutoffs;
+	}
+
+	public synchronized double getGameFirstMoveCutoffRate() {
+		return rate(gameFirstMoveCutoffs, gameCutoffs);
+	}
+
+	public synchronized double getGameBranchingFactor() {
+		return moves == 0 ? 0 : gameBranchingFactors / moves;
+	}
+
+	public synchronized double getGameAverageDepth() {
+		return moves == 0 ? 0 : (double) gameDepths / moves;
+	}
+
+	public synchronized double getGameTableHitRate() {
+		return rate(gameHits, gameProbes);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("nodes %d leaves %d depth %d ebf %.2f cutoffs %d (%.0f%% first move) tt hits %.0f%%",
+				lastNodes, lastLeaves, lastDepth, getLastBranchingFactor(), lastCutoffs,
+				100 * getLastFirstMoveCutoffRate(), 100 * getLastTableHitRate());
+	}
+}
@@ -0,0 +1,41 @@
+package aiproj.player;
+
+/**
+ * Management interface of SearchStatistics: what the last move's search did,
+ * and the same totalled or averaged over the game so far.
+ */
+public interface SearchStatisticsMBean {
+
+	int getMoves();
+
+	long getLastNodes();
+
+	long getLastLeaves();
+
+	long getLastCutoffs();
+
+	/** The fraction of beta cutoffs made by the first move searched */
+	double getLastFirstMoveCutoffRate();
+
+	/** The nodes of the last search to the power of one over its depth */
+	double getLastBranchingFactor();
+
+	int getLastDepth();
+
+	/** The fraction of transposition table probes that found the position */
+	double getLastTableHitRate();
+
+	long getGameNodes();
+
+	long getGameLeaves();
+
+	long getGameCutoffs();
+
+	double getGameFirstMoveCutoffRate();
+
+	double getGameBranchingFactor();
+
+	double getGameAverageDepth();
+
+	double getGameTableHitRate();
+}
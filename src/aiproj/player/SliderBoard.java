@@ -0,0 +1,166 @@
+package aiproj.player;
+
+import aiproj.slider.Move;
+import aiproj.slider.Move.Direction;
+
+/**
+ * A Slider board as the Engine searches it, in the players' rotated
+ * coordinates (see BitBoard): BitBoard for dimensions up to 8, and
+ * WideBoard, one word per row, for larger ones up to 64.
+ *
+ * Square (i, j) is numbered i << shift | j, so a board's squares, and the
+ * move codes square << 2 | direction, fit arrays of a size fixed by its
+ * shift. Both kinds of board list their moves in the same order, so a
+ * search of the same position on either visits the same nodes.
+ */
+abstract class SliderBoard {
+
+	/** Move directions, numbered as in Move.Direction */
+	static final int UP = 0, DOWN = 1, LEFT = 2, RIGHT = 3;
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/** The absence of a move (a pass) */
+	static final int NO_MOVE = 0xFFFF;
+
+	final int dimension;
+
+	/** Square (i, j) is numbered i << shift | j */
+	final int shift;
+
+	long hash;
+	int hcount, vcount;
+	int hscore, vscore;
+
+	SliderBoard(int dimension, int shift) {
+		this.dimension = dimension;
+		this.shift = shift;
+	}
+
+	/** A board of the smallest kind that holds the given dimension, read from text */
+	static SliderBoard create(int dimension, String board) {
+		return dimension <= BitBoard.MAX_DIMENSION ? new BitBoard(dimension, board)
+				: new WideBoard(dimension, board);
+	}
+
+	/** A copy of this board, to be searched independently of it */
+	abstract SliderBoard copy();
+
+	/** Set the sliders of this board, and the state derived from them, to another's of the same kind */
+	abstract void copyFrom(SliderBoard board);
+
+	/** The hash of this position with the given side to move */
+	abstract long key(boolean horizontal);
+
+	abstract boolean isBlock(int i, int j);
+
+	/** Whether a legal move takes its slider off the board */
+	abstract boolean isExit(int move);
+
+	/**
+	 * Fill moves with the legal moves of the given side and return how many
+	 * there are: horizontal sliders from the bottom right corner, vertical
+	 * sliders from the top right corner.
+	 */
+	abstract int getPossibleMoves(boolean horizontal, int[] moves);
+
+	/**
+	 * Fill moves with the forcing moves of the given side, in the order
+	 * getPossibleMoves() lists them, and return how many there are: exits,
+	 * and moves onto the square just ahead of one of the other side's front
+	 * sliders, those in its most advanced column (H) or row (V). Only for
+	 * boards where the game is not finished.
+	 */
+	final int getForcingMoves(boolean horizontal, int[] moves) {
+		int count = getPossibleMoves(horizontal, moves);
+		int front = horizontal ? frontRow() : frontColumn();
+		int forcing = 0;
+		for (int k = 0; k < count; k++) {
+			int move = moves[k];
+			if (isExit(move) || blocks(move, horizontal, front)) {
+				moves[forcing++] = move;
+			}
+		}
+		return forcing;
+	}
+
+	/** Whether a move of the given side lands just ahead of a slider of the other side's front */
+	private boolean blocks(int move, boolean horizontal, int front) {
+		int square = move >>> 2;
+		int i = square >>> shift, j = square & (1 << shift) - 1;
+		switch (move & 3) {
+		case UP:
+			i--;
+			break;
+		case DOWN:
+			i++;
+			break;
+		case LEFT:
+			j--;
+			break;
+		default:
+			j++;
+			break;
+		}
+		return horizontal ? i == front - 1 && isV(front, j) : j == front + 1 && isH(i, front);
+	}
+
+	/** The most advanced row holding a vertical slider, the nearest the top */
+	abstract int frontRow();
+
+	/** The most advanced column holding a horizontal slider, the nearest the right */
+	abstract int frontColumn();
+
+	abstract boolean isH(int i, int j);
+
+	abstract boolean isV(int i, int j);
+
+	abstract void makeMove(int move);
+
+	abstract void undoMove(int move);
+
+	/** Replace the per-square weights of each slider type, and recompute the scores */
+	abstract void setWeights(int[] hweights, int[] vweights);
+
+	/** Check the incrementally updated state against a full recompute, for debugging */
+	abstract boolean verify();
+
+	/** The number of moves the given side needs to clear its sliders off an empty board */
+	abstract int distance(boolean horizontal);
+
+	int sliderCount() {
+		return hcount + vcount;
+	}
+
+	boolean finished() {
+		return hcount == 0 || vcount == 0;
+	}
+
+	/** The number of square numbers, the size of a per-square weight table */
+	final int squares() {
+		return 1 << 2 * shift;
+	}
+
+	/** The number of move codes, the size of a per-move table */
+	final int moveCodes() {
+		return squares() << 2;
+	}
+
+	/** The most moves one side can have: three for each of at most dimension sliders */
+	final int maxMoves() {
+		return 3 * dimension;
+	}
+
+	/** The number of square (i, j) */
+	final int index(int i, int j) {
+		return i << shift | j;
+	}
+
+	final int encodeMove(int i, int j, Direction d) {
+		return index(i, j) << 2 | d.ordinal();
+	}
+
+	final Move decodeMove(int move) {
+		int square = move >>> 2;
+		return new Move(square >>> shift, square & (1 << shift) - 1, DIRECTIONS[move & 3]);
+	}
+}
@@ -0,0 +1,384 @@
+package aiproj.player;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.stream.IntStream;
+import aiproj.slider.Referee;
+
+/**
+ * Endgame tablebase for one board dimension and block layout: the exact
+ * result of every position with between one and maxSliders sliders of each
+ * type, with either side to move, solved by retrograde analysis.
+ *
+ * Each position's value is a short from the point of view of the side to
+ * move: d > 0 if it wins in d plies, -d if it loses in d plies, and 0 if
+ * neither side can force a win (including positions where neither side can
+ * move). Plies count passes. Values are stored in subtables by the number of
+ * sliders of each type, and within a subtable by the rank of the H and V
+ * slider sets among the unblocked squares, and the side to move.
+ *
+ * Run this class to generate tablebases:
+ * java aiproj.player.Tablebase N K directory [layout]
+ * to solve all positions with up to K sliders per side for every starting
+ * layout of dimension N (or only the layout with the given index, see
+ * Referee.layouts()), writing one file per layout into the directory.
+ */
+final class Tablebase {
+
+	private static final int MAGIC = 0x534C5442; // "SLTB"
+	private static final int VERSION = 1;
+	private static final int HEADER = 24;
+
+	/** Returned by probe() for positions outside the tablebase */
+	static final int NOT_FOUND = Integer.MIN_VALUE;
+
+	/** Positions solved between checks for progress when generating */
+	private static final int CHUNK = 1 << 16;
+
+	private static final long[][] BINOMIAL = new long[65][65];
+
+	static {
+		for (int n = 0; n <= 64; n++) {
+			BINOMIAL[n][0] = 1;
+			for (int k = 1; k <= n; k++) {
+				BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+			}
+		}
+	}
+
+	private final int dimension, maxSliders;
+	private final long blocks;
+
+	/** The unblocked squares in ascending order, and each square's place in that order */
+	private final int[] free;
+	private final int[] freeIndex = new int[64];
+
+	/** The index of the first position of each subtable, by slider counts */
+	private final long[][] offsets;
+	private final long size;
+
+	/** The values: an array while generating, the mapped file when probing */
+	private short[] values;
+	private ByteBuffer buffer;
+
+	private Tablebase(int dimension, int maxSliders, long blocks) {
+		this.dimension = dimension;
+		this.maxSliders = maxSliders;
+		this.blocks = blocks;
+
+		int f = 0;
+		int[] free = new int[dimension * dimension];
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j < dimension; j++) {
+				int square = BitBoard.square(i, j);
+				if ((blocks >>> square & 1) == 0) {
+					freeIndex[square] = f;
+					free[f++] = square;
+				}
+			}
+		}
+		this.free = java.util.Arrays.copyOf(free, f);
+
+		this.offsets = new long[maxSliders + 1][maxSliders + 1];
+		long size = 0;
+		for (int h = 1; h <= maxSliders; h++) {
+			for (int v = 1; v <= maxSliders; v++) {
+				offsets[h][v] = size;
+				size += 2 * BINOMIAL[f][h] * BINOMIAL[f - h][v];
+			}
+		}
+		this.size = size;
+	}
+
+	/** The file holding the tablebase for a dimension and block layout */
+	static Path file(String directory, int dimension, long blocks) {
+		return Paths.get(directory, "slider-" + dimension + "-" + Long.toHexString(blocks) + ".tb");
+	}
+
+	/**
+	 * Map a tablebase file into memory.
+	 *
+	 * @throws IOException if the file cannot be read, or is not a tablebase
+	 * for boards of the given dimension and blocks
+	 */
+	static Tablebase open(Path file, int dimension, long blocks) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (channel.size() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException(file + " is not a tablebase");
+			}
+			if (buffer.getInt(8) != dimension || buffer.getLong(16) != blocks) {
+				throw new IOException(file + " is a tablebase for another board");
+			}
+			Tablebase tablebase = new Tablebase(dimension, buffer.getInt(12), blocks);
+			if (channel.size() != HEADER + 2 * tablebase.size) {
+				throw new IOException(file + " is truncated");
+			}
+			tablebase.buffer = buffer;
+			return tablebase;
+		}
+	}
+
+	/**
+	 * The value of a position for the side to move, or NOT_FOUND if it has
+	 * no sliders of one type or too many of either.
+	 */
+	int probe(long hsliders, long vsliders, boolean horizontal) {
+		int h = Long.bitCount(hsliders), v = Long.bitCount(vsliders);
+		if (h == 0 || v == 0 || h > maxSliders || v > maxSliders) {
+			return NOT_FOUND;
+		}
+		return value(index(hsliders, vsliders, horizontal));
+	}
+
+	private int value(long index) {
+		return values != null ? values[(int) index] : buffer.getShort(HEADER + 2 * (int) index);
+	}
+
+	private long index(long hsliders, long vsliders, boolean horizontal) {
+		int h = Long.bitCount(hsliders), v = Long.bitCount(vsliders);
+
+		long hrank = 0;
+		int k = 1;
+		for (long squares = hsliders; squares != 0; squares &= squares - 1) {
+			hrank += BINOMIAL[freeIndex[Long.numberOfTrailingZeros(squares)]][k++];
+		}
+
+		// V sliders are ranked among the free squares the H sliders leave
+		long vrank = 0;
+		k = 1;
+		for (long squares = vsliders; squares != 0; squares &= squares - 1) {
+			int square = Long.numberOfTrailingZeros(squares);
+			int place = freeIndex[square] - Long.bitCount(hsliders & ((1L << square) - 1));
+			vrank += BINOMIAL[place][k++];
+		}
+
+		return offsets[h][v] + 2 * (hrank * BINOMIAL[free.length - h][v] + vrank) + (horizontal ? 0 : 1);
+	}
+
+	/** The places of the k-subset of the given rank, as a bit set */
+	private static long subset(long rank, int k) {
+		long places = 0;
+		for (int i = k; i >= 1; i--) {
+			int c = i - 1;
+			while (BINOMIAL[c + 1][i] <= rank) {
+				c++;
+			}
+			rank -= BINOMIAL[c][i];
+			places |= 1L << c;
+		}
+		return places;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("usage: java aiproj.player.Tablebase N K directory [layout]");
+			System.exit(1);
+		}
+		int dimension = Integer.parseInt(args[0]);
+		int maxSliders = Integer.parseInt(args[1]);
+		List<String> layouts = Referee.layouts(dimension);
+		int first = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		int last = args.length > 3 ? first : layouts.size() - 1;
+
+		for (int k = first; k <= last; k++) {
+			BitBoard board = new BitBoard(dimension, layouts.get(k));
+			Tablebase tablebase = new Tablebase(dimension, maxSliders, board.blocks);
+			if (tablebase.size > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("tablebase too large: " + tablebase.size + " positions");
+			}
+			long start = System.nanoTime();
+			tablebase.generate(board);
+			Path file = file(args[2], dimension, board.blocks);
+			tablebase.write(file);
+			System.err.println("layout " + k + ": " + tablebase.size + " positions in "
+					+ (System.nanoTime() - start) / 1000000 + "ms, " + file);
+		}
+	}
+
+	/** Solve every subtable, each after the subtables its exits lead to */
+	private void generate(BitBoard layout) {
+		values = new short[(int) size];
+		int[] longest = new int[2 * maxSliders + 1];
+		for (int total = 2; total <= 2 * maxSliders; total++) {
+			for (int h = Math.max(1, total - maxSliders); h <= Math.min(maxSliders, total - 1); h++) {
+				longest[total] = Math.max(longest[total], solve(layout, h, total - h, longest[total - 1]));
+			}
+		}
+	}
+
+	/**
+	 * Solve the subtable of positions with h H sliders and v V sliders, given
+	 * that the longest result in the subtables it exits into takes the given
+	 * number of plies. Pass d finds the positions won or lost in exactly d
+	 * plies, looking only at results already known before the pass, so the
+	 * chunks of each pass can be solved in parallel. Returns the longest
+	 * result found.
+	 */
+	private int solve(BitBoard layout, int h, int v, int exitLongest) {
+		long offset = offsets[h][v];
+		long count = 2 * BINOMIAL[free.length][h] * BINOMIAL[free.length - h][v];
+		int chunks = (int) ((count + CHUNK - 1) / CHUNK);
+
+		int distance = 1;
+		for (;; distance++) {
+			final int d = distance;
+			int solved = IntStream.range(0, chunks).parallel().map(chunk -> {
+				Solver solver = new Solver(layout, h, v, d);
+				int found = 0;
+				long end = Math.min(count, (long) (chunk + 1) * CHUNK);
+				for (long index = (long) chunk * CHUNK; index < end; index++) {
+					if (values[(int) (offset + index)] == 0) {
+						int value = solver.solve(index);
+						if (value != 0) {
+							values[(int) (offset + index)] = (short) value;
+							found++;
+						}
+					}
+				}
+				return found;
+			}).sum();
+
+			if (solved == 0 && distance > exitLongest) {
+				return distance - 1;
+			}
+		}
+	}
+
+	/** Works out the values of positions in one subtable, in one pass */
+	private final class Solver {
+
+		private final BitBoard board;
+		private final int[] moves = new int[BitBoard.MAX_MOVES];
+		private final int[] remaining = new int[64];
+		private final int h, v, distance;
+
+		Solver(BitBoard layout, int h, int v, int distance) {
+			this.board = new BitBoard(layout);
+			this.h = h;
+			this.v = v;
+			this.distance = distance;
+		}
+
+		/** The value of the position at index in the subtable if it takes 'distance' plies, else 0 */
+		int solve(long index) {
+			boolean horizontal = (index & 1) == 0;
+			long rank = index >>> 1;
+			long vcombinations = BINOMIAL[free.length - h][v];
+			long hplaces = subset(rank / vcombinations, h);
+			long vplaces = subset(rank % vcombinations, v);
+
+			long hsliders = 0;
+			int r = 0;
+			for (int place = 0; place < free.length; place++) {
+				if ((hplaces >>> place & 1) != 0) {
+					hsliders |= 1L << free[place];
+				} else {
+					remaining[r++] = free[place];
+				}
+			}
+			long vsliders = 0;
+			for (long places = vplaces; places != 0; places &= places - 1) {
+				vsliders |= 1L << remaining[Long.numberOfTrailingZeros(places)];
+			}
+
+			board.hsliders = hsliders;
+			board.vsliders = vsliders;
+			int count = board.getPossibleMoves(horizontal, moves);
+			if (count == 0) {
+				if (board.getPossibleMoves(!horizontal, moves) == 0) {
+					return 0; // neither side can move: a draw
+				}
+				return pass(successor(hsliders, vsliders, !horizontal));
+			}
+
+			int win = Integer.MAX_VALUE; // the quickest win found
+			int loss = 0; // the slowest loss, while every move loses
+			boolean losing = true;
+			for (int k = 0; k < count; k++) {
+				int move = moves[k];
+				long from = 1L << (move >>> 2);
+				long to = target(move);
+				long nexth = hsliders, nextv = vsliders;
+				if (horizontal) {
+					nexth ^= from | to;
+				} else {
+					nextv ^= from | to;
+				}
+				if (nexth == 0 || nextv == 0) {
+					// the mover's last slider leaves the board
+					win = 1;
+					break;
+				}
+
+				int value = successor(nexth, nextv, !horizontal);
+				if (value < 0) {
+					win = Math.min(win, 1 - value);
+				} else if (value > 0) {
+					loss = Math.max(loss, value + 1);
+				} else {
+					losing = false;
+				}
+			}
+
+			if (win <= distance) {
+				return win;
+			} else if (losing && loss <= distance) {
+				return -loss;
+			}
+			return 0;
+		}
+
+		/** The value of a pass, given the value of the position after it */
+		private int pass(int value) {
+			if (value < 0 && 1 - value <= distance) {
+				return 1 - value;
+			} else if (value > 0 && value + 1 <= distance) {
+				return -(value + 1);
+			}
+			return 0;
+		}
+
+		/**
+		 * The known value of a position after a move: anything in a smaller
+		 * subtable, but in this subtable only what earlier passes found.
+		 */
+		private int successor(long hsliders, long vsliders, boolean horizontal) {
+			int value = value(index(hsliders, vsliders, horizontal));
+			boolean sameSubtable = Long.bitCount(hsliders) == h && Long.bitCount(vsliders) == v;
+			return sameSubtable && Math.abs(value) >= distance ? 0 : value;
+		}
+
+		/** The square a move takes its slider to, as a bit, or 0 if it leaves the board */
+		private long target(int move) {
+			int square = move >>> 2;
+			switch (move & 3) {
+			case BitBoard.UP:
+				return square < 8 ? 0 : 1L << (square - 8);
+			case BitBoard.DOWN:
+				return 1L << (square + 8);
+			case BitBoard.LEFT:
+				return 1L << (square - 1);
+			default:
+				return (square & 7) == dimension - 1 ? 0 : 1L << (square + 1);
+			}
+		}
+	}
+
+	private void write(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(dimension);
+			out.writeInt(maxSliders);
+			out.writeLong(blocks);
+			for (short value : values) {
+				out.writeShort(value);
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package aiproj.player;
+
+/**
+ * Fixed-size transposition table for the negamax players, indexed by the
+ * Zobrist hash of a position. Each entry packs the search depth, the bound
+ * type, the score and the best move into a single long; an entry is replaced
+ * by a different position, or by a search of the same position at least as
+ * deep.
+ * 
+ * The table may be shared by several searching threads without locking: each
+ * slot stores its key xor its entry, so a slot torn by two threads writing at
+ * once no longer matches either key and reads as a miss.
+ */
+final class TranspositionTable {
+
+	static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+	/** Returned by probe() when the position is not in the table */
+	static final long MISS = 0;
+
+	private final long[] keys;
+	private final long[] entries;
+	private final int mask;
+
+	TranspositionTable(int bits) {
+		this.keys = new long[1 << bits];
+		this.entries = new long[1 << bits];
+		this.mask = (1 << bits) - 1;
+	}
+
+	long probe(long key) {
+		int index = (int) key & mask;
+		long entry = entries[index];
+		return (keys[index] ^ entry) == key ? entry : MISS;
+	}
+
+	void store(long key, int depth, int bound, int score, int move) {
+		int index = (int) key & mask;
+		long old = entries[index];
+		if ((keys[index] ^ old) != key || depth >= depth(old)) {
+			long entry = (long) score << 32 | (long) (move & 0xFFFF) << 16 | depth << 8 | bound;
+			keys[index] = key ^ entry;
+			entries[index] = entry;
+		}
+	}
+
+	static int score(long entry) {
+		return (int) (entry >> 32);
+	}
+
+	/** The best move of an entry, as encoded by BitBoard.encode(), or NO_MOVE */
+	static int move(long entry) {
+		return (int) (entry >>> 16 & 0xFFFF);
+	}
+
+	static int depth(long entry) {
+		return (int) (entry >>> 8 & 0xFF);
+	}
+
+	static int bound(long entry) {
+		return (int) (entry & 0xFF);
+	}
+}
@@ -0,0 +1,288 @@
+package aiproj.player;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Tunes a player's evaluation weights (see Weights) to a position set (see
+ * PositionSet), Texel-style: each position's evaluation for H, e, predicts
+ * H's expected score as sigmoid(K * e), and the weights are fitted to
+ * minimise the mean squared error of those predictions against the games'
+ * results (1 for an H win, 1/2 for a draw, 0 for a loss).
+ *
+ * K is first fitted to the player's hand-picked weights, and then held
+ * fixed while the weights are fitted by gradient descent (Adam), every step
+ * a pass over the whole set. The evaluation is linear in the weights, so
+ * each position contributes its error and gradient from a few counts of its
+ * sliders, worked out with bit operations straight from the mapped file.
+ * Each pass is split over the cores with fork/join.
+ *
+ * The weight for a slider that has not yet advanced stays as it is, since
+ * adding the same to every advance weight is the same as taking it from
+ * the exit weight. The fitted weights are multiplied by 'scale' (default
+ * SCALE), for a finer resolution than the hand-picked ones, rounded, and
+ * stored in the weights file for the set's dimension.
+ *
+ * java aiproj.player.Tuner positions weights [joshua|helen [iterations [scale]]]
+ */
+final class Tuner {
+
+	private static final int ITERATIONS = 500;
+	private static final int SCALE = 4;
+
+	/** Adam's step size and decay rates */
+	private static final double LEARNING_RATE = 0.1, BETA1 = 0.9, BETA2 = 0.999, EPSILON = 1e-8;
+
+	/** Positions per fork/join task */
+	private static final int CHUNK = 1 << 14;
+
+	private final PositionSet positions;
+	private final int dimension;
+
+	/** The weights: the advance weights from one step on, then those at the indices aheadOpen, sidesOpen and exit */
+	private final double[] weights;
+	private final int aheadOpen, sidesOpen, exit;
+
+	/** The weight of a slider that has not advanced, which is not tuned */
+	private final double start;
+	private double k;
+
+	private final Features features;
+
+	Tuner(PositionSet positions, Weights initial) {
+		this.positions = positions;
+		this.dimension = positions.dimension;
+		this.aheadOpen = dimension - 1;
+		this.sidesOpen = dimension;
+		this.exit = dimension + 1;
+		this.weights = new double[dimension + 2];
+		for (int step = 1; step < dimension; step++) {
+			weights[step - 1] = initial.advance[step];
+		}
+		weights[aheadOpen] = initial.aheadOpen;
+		weights[sidesOpen] = initial.sidesOpen;
+		weights[exit] = initial.exit;
+		this.start = initial.advance[0];
+		this.features = new Features(positions, start);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java aiproj.player.Tuner positions weights [joshua|helen [iterations [scale]]]");
+			System.exit(1);
+		}
+		PositionSet positions = PositionSet.open(args[0]);
+		boolean helen = args.length > 2 && args[2].equals("helen");
+		int iterations = args.length > 3 ? Integer.parseInt(args[3]) : ITERATIONS;
+		int scale = args.length > 4 ? Integer.parseInt(args[4]) : SCALE;
+		int n = positions.dimension;
+		Weights initial = helen ? HelenPlayer.defaultWeights(n) : JoshuaPlayer.defaultWeights(n);
+
+		long start = System.nanoTime();
+		Tuner tuner = new Tuner(positions, initial);
+		double before = tuner.fitK();
+		System.err.printf("%d positions, K %.4f, error %.6f%n", positions.count, tuner.k, before);
+		double after = tuner.tune(iterations);
+		Weights tuned = tuner.weights(scale);
+		System.err.printf("error %.6f after %d iterations, %.1f s%n", after, iterations,
+				(System.nanoTime() - start) / 1e9);
+		System.err.println(tuned);
+		tuned.store(args[1], String.format("tuned for %s on %s: %d positions, error %.6f to %.6f",
+				helen ? "HelenPlayer" : "JoshuaPlayer", args[0], positions.count, before, after));
+	}
+
+	/** Fit K to the current weights, by golden section search on log K, and return the error */
+	double fitK() {
+		double low = Math.log(1e-4), high = Math.log(10);
+		double ratio = (Math.sqrt(5) - 1) / 2;
+		double a = high - ratio * (high - low), b = low + ratio * (high - low);
+		double errorA = errorAt(a), errorB = errorAt(b);
+		for (int step = 0; step < 40; step++) {
+			if (errorA < errorB) {
+				high = b;
+				b = a;
+				errorB = errorA;
+				a = high - ratio * (high - low);
+				errorA = errorAt(a);
+			} else {
+				low = a;
+				a = b;
+				errorA = errorB;
+				b = low + ratio * (high - low);
+				errorB = errorAt(b);
+			}
+		}
+		return errorAt((low + high) / 2);
+	}
+
+	private double errorAt(double logK) {
+		k = Math.exp(logK);
+		return pass()[weights.length];
+	}
+
+	/** Fit the weights by the given number of steps of gradient descent, and return the error */
+	double tune(int iterations) {
+		double[] m = new double[weights.length], v = new double[weights.length];
+		for (int t = 1; t <= iterations; t++) {
+			double[] gradient = pass();
+			for (int w = 0; w < weights.length; w++) {
+				m[w] = BETA1 * m[w] + (1 - BETA1) * gradient[w];
+				v[w] = BETA2 * v[w] + (1 - BETA2) * gradient[w] * gradient[w];
+				double mHat = m[w] / (1 - Math.pow(BETA1, t)), vHat = v[w] / (1 - Math.pow(BETA2, t));
+				weights[w] -= LEARNING_RATE * mHat / (Math.sqrt(vHat) + EPSILON);
+			}
+			if (t % 10 == 0) {
+				System.err.printf("iteration %d: error %.6f%n", t, gradient[weights.length]);
+			}
+		}
+		return pass()[weights.length];
+	}
+
+	/** The fitted weights, multiplied by scale and rounded */
+	Weights weights(int scale) {
+		int[] advance = new int[dimension];
+		advance[0] = (int) Math.round(scale * start);
+		for (int step = 1; step < dimension; step++) {
+			advance[step] = (int) Math.round(scale * weights[step - 1]);
+		}
+		return new Weights(advance, (int) Math.round(scale * weights[aheadOpen]),
+				(int) Math.round(scale * weights[sidesOpen]), (int) Math.round(scale * weights[exit]));
+	}
+
+	/** The mean gradient of the error over the whole set, with the mean error itself appended */
+	private double[] pass() {
+		double[] sums = ForkJoinPool.commonPool().invoke(new Pass(features, weights, k, 0, positions.count));
+		for (int w = 0; w < sums.length; w++) {
+			sums[w] /= Math.max(1, positions.count);
+		}
+		return sums;
+	}
+
+	/** The summed gradient and error of the positions from 'from' to 'to', split in halves while large */
+	private static final class Pass extends RecursiveTask<double[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Features features;
+		private final double[] weights;
+		private final double k;
+		private final int from, to;
+
+		Pass(Features features, double[] weights, double k, int from, int to) {
+			this.features = features;
+			this.weights = weights;
+			this.k = k;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (to - from > CHUNK) {
+				int middle = (from + to) >>> 1;
+				Pass low = new Pass(features, weights, k, from, middle);
+				low.fork();
+				double[] sums = new Pass(features, weights, k, middle, to).compute();
+				double[] lowSums = low.join();
+				for (int w = 0; w < sums.length; w++) {
+					sums[w] += lowSums[w];
+				}
+				return sums;
+			}
+
+			double[] sums = new double[weights.length + 1];
+			double[] counts = new double[weights.length];
+			for (int p = from; p < to; p++) {
+				double e = features.count(p, counts);
+				for (int w = 0; w < weights.length; w++) {
+					e += weights[w] * counts[w];
+				}
+				double predicted = 1 / (1 + Math.exp(-k * e));
+				double error = (features.positions.result(p) + 1) / 2.0 - predicted;
+				sums[weights.length] += error * error;
+				double slope = -2 * error * predicted * (1 - predicted) * k;
+				for (int w = 0; w < weights.length; w++) {
+					sums[w] += slope * counts[w];
+				}
+			}
+			return sums;
+		}
+	}
+
+	/** What each weight counts in the positions of a set, laid out as the tuner's weights */
+	private static final class Features {
+
+		private final PositionSet positions;
+		private final int dimension;
+		private final int aheadOpen, sidesOpen, exit;
+
+		/** The weight of a slider that has not advanced */
+		private final double start;
+
+		/** Masks of the board's squares, and of those whose neighbours ahead and to the sides are on it */
+		private final long cells, notLastColumn, notTopRow, innerRows, innerColumns;
+
+		Features(PositionSet positions, double start) {
+			this.positions = positions;
+			this.dimension = positions.dimension;
+			this.aheadOpen = dimension - 1;
+			this.sidesOpen = dimension;
+			this.exit = dimension + 1;
+			this.start = start;
+
+			long cells = 0, lastColumn = 0, innerRows = 0, innerColumns = 0;
+			for (int i = 0; i < dimension; i++) {
+				for (int j = 0; j < dimension; j++) {
+					cells |= BitBoard.bit(i, j);
+					lastColumn |= j == dimension - 1 ? BitBoard.bit(i, j) : 0;
+					innerRows |= i > 0 && i < dimension - 1 ? BitBoard.bit(i, j) : 0;
+					innerColumns |= j > 0 && j < dimension - 1 ? BitBoard.bit(i, j) : 0;
+				}
+			}
+			this.cells = cells;
+			this.notLastColumn = cells & ~lastColumn;
+			this.notTopRow = cells & ~((1L << dimension) - 1);
+			this.innerRows = innerRows;
+			this.innerColumns = innerColumns;
+		}
+
+		/**
+		 * Fill features with what each weight counts in position p, H's less V's,
+		 * and return the rest of its evaluation, from the untuned weight
+		 */
+		double count(int p, double[] features) {
+			long h = positions.hsliders(p), v = positions.vsliders(p), blocks = positions.blocks(p);
+			Arrays.fill(features, 0);
+
+			// the open squares ahead of and beside each square, for H and for V
+			long hAhead = notLastColumn & ~(blocks >>> 1);
+			long hSides = hAhead & innerRows & ~(blocks << 8) & ~(blocks >>> 8);
+			long vAhead = notTopRow & ~(blocks << 8);
+			long vSides = vAhead & innerColumns & ~(blocks << 1) & ~(blocks >>> 1);
+
+			int unadvanced = 0;
+			for (long sliders = h; sliders != 0; sliders &= sliders - 1) {
+				int step = Long.numberOfTrailingZeros(sliders) & 7;
+				if (step == 0) {
+					unadvanced++;
+				} else {
+					features[step - 1]++;
+				}
+			}
+			for (long sliders = v; sliders != 0; sliders &= sliders - 1) {
+				int step = dimension - 1 - (Long.numberOfTrailingZeros(sliders) >>> 3);
+				if (step == 0) {
+					unadvanced--;
+				} else {
+					features[step - 1]--;
+				}
+			}
+			features[aheadOpen] = Long.bitCount(h & hAhead) - Long.bitCount(v & vAhead);
+			features[sidesOpen] = Long.bitCount(h & hSides) - Long.bitCount(v & vSides);
+			features[exit] = Long.bitCount(v & cells) - Long.bitCount(h & cells);
+			return start * unadvanced;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package aiproj.player;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * The parameters of a player's evaluation for one board dimension, from which
+ * it builds its Evaluator for a particular board: what a slider is worth for
+ * each step it has advanced, what the square ahead of it being open (on the
+ * board and not a block) adds, what both squares beside it being open too
+ * adds, and what each slider off the board is worth beyond the first.
+ *
+ * The players start from their hand-picked weights, and replace them with
+ * those of a weights file (see Tuner) for their dimension if there is one;
+ * each player names its own file in its prefix.weights system property.
+ * The file is a Java properties file with one set of weights per dimension:
+ *
+ * 7.advance = 0 2 4 6 8 10 12
+ * 7.aheadOpen = -1
+ * 7.sidesOpen = -1
+ * 7.exit = 14
+ */
+final class Weights {
+
+	final int dimension;
+
+	/** The weight of a slider for each step it has advanced, from 0 at its start */
+	final int[] advance;
+	final int aheadOpen, sidesOpen, exit;
+
+	Weights(int[] advance, int aheadOpen, int sidesOpen, int exit) {
+		this.dimension = advance.length;
+		this.advance = advance;
+		this.aheadOpen = aheadOpen;
+		this.sidesOpen = sidesOpen;
+		this.exit = exit;
+	}
+
+	/** Weights where each step advanced is worth step more, with the other weights as given */
+	static Weights linear(int dimension, int step, int aheadOpen, int sidesOpen, int exit) {
+		int[] advance = new int[dimension];
+		for (int k = 0; k < dimension; k++) {
+			advance[k] = step * k;
+		}
+		return new Weights(advance, aheadOpen, sidesOpen, exit);
+	}
+
+	/**
+	 * The weights of the given dimension in the given file, or the defaults if
+	 * there is no file or it has none for the dimension
+	 *
+	 * @throws IOException if the file cannot be read, or its weights are malformed
+	 */
+	static Weights load(String file, Weights defaults) throws IOException {
+		Properties properties = new Properties();
+		try (Reader in = new BufferedReader(new FileReader(file))) {
+			properties.load(in);
+		}
+		String prefix = defaults.dimension + ".";
+		if (properties.getProperty(prefix + "advance") == null) {
+			return defaults;
+		}
+		try {
+			String[] steps = properties.getProperty(prefix + "advance").trim().split("\\s+");
+			if (steps.length != defaults.dimension) {
+				throw new IOException(file + ": " + prefix + "advance needs " + defaults.dimension + " weights");
+			}
+			int[] advance = new int[steps.length];
+			for (int k = 0; k < steps.length; k++) {
+				advance[k] = Integer.parseInt(steps[k]);
+			}
+			return new Weights(advance, Integer.parseInt(properties.getProperty(prefix + "aheadOpen").trim()),
+					Integer.parseInt(properties.getProperty(prefix + "sidesOpen").trim()),
+					Integer.parseInt(properties.getProperty(prefix + "exit").trim()));
+		} catch (NumberFormatException | NullPointerException e) {
+			throw new IOException(file + ": malformed weights for dimension " + defaults.dimension);
+		}
+	}
+
+	/**
+	 * The player's weights: those of the file named by the system property
+	 * properties.weights, if it is set and has weights for the dimension, else
+	 * the defaults
+	 */
+	static Weights forPlayer(String name, String properties, Weights defaults) {
+		String file = System.getProperty(properties + ".weights");
+		if (file == null) {
+			return defaults;
+		}
+		try {
+			return load(file, defaults);
+		} catch (IOException e) {
+			System.err.println(name + ": not using weights file: " + e.getMessage());
+			return defaults;
+		}
+	}
+
+	/** Store these weights in the given file, keeping any it has for other dimensions */
+	void store(String file, String comment) throws IOException {
+		Properties properties = new Properties();
+		if (new File(file).exists()) {
+			try (Reader in = new BufferedReader(new FileReader(file))) {
+				properties.load(in);
+			}
+		}
+		String prefix = dimension + ".";
+		StringBuilder steps = new StringBuilder();
+		for (int k = 0; k < dimension; k++) {
+			steps.append(k == 0 ? "" : " ").append(advance[k]);
+		}
+		properties.setProperty(prefix + "advance", steps.toString());
+		properties.setProperty(prefix + "aheadOpen", Integer.toString(aheadOpen));
+		properties.setProperty(prefix + "sidesOpen", Integer.toString(sidesOpen));
+		properties.setProperty(prefix + "exit", Integer.toString(exit));
+		try (Writer out = new BufferedWriter(new FileWriter(file))) {
+			properties.store(out, comment);
+		}
+	}
+
+	/** The evaluator these weights make for boards with the given board's blocks */
+	Evaluator evaluator(SliderBoard board) {
+		return new Evaluator(dimension, squareWeights(board, true), squareWeights(board, false), exit);
+	}
+
+	/** The weight of each square for the given slider type */
+	private int[] squareWeights(SliderBoard board, boolean horizontal) {
+		int[] weights = new int[board.squares()];
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j < dimension; j++) {
+				int ahead = horizontal ? j + 1 : i - 1;
+				int weight = advance[horizontal ? j : dimension - i - 1];
+				if (ahead >= 0 && ahead < dimension && !(horizontal ? board.isBlock(i, j + 1) : board.isBlock(i - 1, j))) {
+					weight += aheadOpen;
+					boolean sidesOpen = horizontal
+							? i > 0 && !board.isBlock(i - 1, j) && i < dimension - 1 && !board.isBlock(i + 1, j)
+							: j > 0 && !board.isBlock(i, j - 1) && j < dimension - 1 && !board.isBlock(i, j + 1);
+					if (sidesOpen) {
+						weight += this.sidesOpen;
+					}
+				}
+				weights[board.index(i, j)] = weight;
+			}
+		}
+		return weights;
+	}
+
+	@Override
+	public String toString() {
+		return "advance " + Arrays.toString(advance) + " aheadOpen " + aheadOpen + " sidesOpen " + sidesOpen
+				+ " exit " + exit;
+	}
+}
@@ -0,0 +1,392 @@
+package aiproj.player;
+
+import java.util.Random;
+
+/**
+ * Representation of a Slider board of dimension up to 64, for boards too big
+ * for BitBoard, in the same rotated coordinates. Each piece type is a set of
+ * words, one per row, with square (i, j) bit j of word i; it is numbered
+ * i << 6 | j in moves and weight tables.
+ *
+ * Moves are generated a row at a time: one shift and mask of a row's empty
+ * squares, or of the empty squares of the row above or below, finds every
+ * slider in the row that can move a given way. Every move ends in the
+ * slider's own row or the next one, so the rows are all move generation
+ * reads, and no column sets are kept. Slider counts are kept incrementally,
+ * and recounted for checking with Long.bitCount().
+ *
+ * The board keeps the same counts and scores as BitBoard, and lists moves
+ * in the same order. Its hashes differ from BitBoard's, though: it numbers
+ * squares differently and has Zobrist keys of its own.
+ */
+final class WideBoard extends SliderBoard {
+
+	static final int MAX_DIMENSION = 64;
+
+	/** Zobrist keys for each piece type on each square, and for V to move */
+	private static final long[] HKEYS = new long[64 * 64], VKEYS = new long[64 * 64], BKEYS = new long[64 * 64];
+	private static final long VTURN_KEY;
+
+	static {
+		Random random = new Random(30025);
+		for (int square = 0; square < HKEYS.length; square++) {
+			HKEYS[square] = random.nextLong();
+			VKEYS[square] = random.nextLong();
+			BKEYS[square] = random.nextLong();
+		}
+		VTURN_KEY = random.nextLong();
+	}
+
+	/** Each piece type, a word per row */
+	final long[] hsliders, vsliders, blocks;
+
+	/** The weight of a slider on each square, summed into hscore and vscore */
+	private int[] hweights, vweights;
+
+	/** Mask of the squares of a row, and of the last one */
+	private final long cells, lastColumn;
+
+	WideBoard(int dimension, String board) {
+		super(dimension, 6);
+		if (dimension > MAX_DIMENSION) {
+			throw new IllegalArgumentException("unsupported board dimension: " + dimension);
+		}
+		this.hsliders = new long[dimension];
+		this.vsliders = new long[dimension];
+		this.blocks = new long[dimension];
+		this.hweights = new int[squares()];
+		this.vweights = new int[squares()];
+		this.cells = dimension == 64 ? -1L : (1L << dimension) - 1;
+		this.lastColumn = 1L << dimension - 1;
+
+		int index = 0;
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j < dimension; j++) {
+				while ("+BHV".indexOf(board.charAt(index)) < 0) {
+					index++;
+				}
+				switch (board.charAt(index)) {
+				case 'B':
+					blocks[i] |= 1L << j;
+					hash ^= BKEYS[index(i, j)];
+					break;
+				case 'H':
+					toggleH(i, j);
+					break;
+				case 'V':
+					toggleV(i, j);
+					break;
+				}
+				index++;
+			}
+		}
+	}
+
+	/** A copy of another board, to be searched independently of it */
+	WideBoard(WideBoard board) {
+		super(board.dimension, 6);
+		this.hsliders = new long[dimension];
+		this.vsliders = new long[dimension];
+		this.blocks = board.blocks.clone();
+		this.cells = board.cells;
+		this.lastColumn = board.lastColumn;
+		copyFrom(board);
+	}
+
+	SliderBoard copy() {
+		return new WideBoard(this);
+	}
+
+	void copyFrom(SliderBoard other) {
+		WideBoard board = (WideBoard) other;
+		System.arraycopy(board.hsliders, 0, hsliders, 0, dimension);
+		System.arraycopy(board.vsliders, 0, vsliders, 0, dimension);
+		hash = board.hash;
+		hcount = board.hcount;
+		vcount = board.vcount;
+		hscore = board.hscore;
+		vscore = board.vscore;
+		hweights = board.hweights;
+		vweights = board.vweights;
+	}
+
+	long key(boolean horizontal) {
+		return horizontal ? hash : hash ^ VTURN_KEY;
+	}
+
+	/** The board in the Referee's text format, which the constructor reads back */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder(2 * dimension * dimension);
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j < dimension; j++) {
+				char c = (hsliders[i] >>> j & 1) != 0 ? 'H' : (vsliders[i] >>> j & 1) != 0 ? 'V'
+						: (blocks[i] >>> j & 1) != 0 ? 'B' : '+';
+				s.append(j == 0 ? "" : " ").append(c);
+			}
+			s.append('\n');
+		}
+		return s.toString();
+	}
+
+	boolean isBlock(int i, int j) {
+		return (blocks[i] >>> j & 1) != 0;
+	}
+
+	boolean isH(int i, int j) {
+		return (hsliders[i] >>> j & 1) != 0;
+	}
+
+	boolean isV(int i, int j) {
+		return (vsliders[i] >>> j & 1) != 0;
+	}
+
+	int frontRow() {
+		int i = 0;
+		while (i < dimension - 1 && vsliders[i] == 0) {
+			i++;
+		}
+		return i;
+	}
+
+	int frontColumn() {
+		long columns = 0;
+		for (int i = 0; i < dimension; i++) {
+			columns |= hsliders[i];
+		}
+		return 63 - Long.numberOfLeadingZeros(columns);
+	}
+
+	boolean isExit(int move) {
+		int square = move >>> 2;
+		return (move & 3) == RIGHT && (square & 63) == dimension - 1
+				|| (move & 3) == UP && square < 64;
+	}
+
+	/** Add or remove a horizontal slider */
+	private void toggleH(int i, int j) {
+		int square = i << 6 | j;
+		hsliders[i] ^= 1L << j;
+		hash ^= HKEYS[square];
+		if ((hsliders[i] >>> j & 1) != 0) {
+			hcount++;
+			hscore += hweights[square];
+		} else {
+			hcount--;
+			hscore -= hweights[square];
+		}
+	}
+
+	/** Add or remove a vertical slider */
+	private void toggleV(int i, int j) {
+		int square = i << 6 | j;
+		vsliders[i] ^= 1L << j;
+		hash ^= VKEYS[square];
+		if ((vsliders[i] >>> j & 1) != 0) {
+			vcount++;
+			vscore += vweights[square];
+		} else {
+			vcount--;
+			vscore -= vweights[square];
+		}
+	}
+
+	/** The empty squares of row i */
+	private long empty(int i) {
+		return cells & ~(hsliders[i] | vsliders[i] | blocks[i]);
+	}
+
+	void setWeights(int[] hweights, int[] vweights) {
+		this.hweights = hweights;
+		this.vweights = vweights;
+		hscore = 0;
+		vscore = 0;
+		for (int i = 0; i < dimension; i++) {
+			hscore += sum(i, hsliders[i], hweights);
+			vscore += sum(i, vsliders[i], vweights);
+		}
+	}
+
+	private static int sum(int i, long row, int[] weights) {
+		int sum = 0;
+		for (; row != 0; row &= row - 1) {
+			sum += weights[i << 6 | Long.numberOfTrailingZeros(row)];
+		}
+		return sum;
+	}
+
+	boolean verify() {
+		long hash = 0;
+		int hcount = 0, vcount = 0, hscore = 0, vscore = 0;
+		for (int i = 0; i < dimension; i++) {
+			for (long row = blocks[i]; row != 0; row &= row - 1) {
+				hash ^= BKEYS[i << 6 | Long.numberOfTrailingZeros(row)];
+			}
+			for (long row = hsliders[i]; row != 0; row &= row - 1) {
+				hash ^= HKEYS[i << 6 | Long.numberOfTrailingZeros(row)];
+			}
+			for (long row = vsliders[i]; row != 0; row &= row - 1) {
+				hash ^= VKEYS[i << 6 | Long.numberOfTrailingZeros(row)];
+			}
+			hcount += Long.bitCount(hsliders[i]);
+			vcount += Long.bitCount(vsliders[i]);
+			hscore += sum(i, hsliders[i], hweights);
+			vscore += sum(i, vsliders[i], vweights);
+		}
+		return hash == this.hash && hcount == this.hcount && vcount == this.vcount
+				&& hscore == this.hscore && vscore == this.vscore;
+	}
+
+	int distance(boolean horizontal) {
+		int distance = 0;
+		for (int i = 0; i < dimension; i++) {
+			if (horizontal) {
+				for (long row = hsliders[i]; row != 0; row &= row - 1) {
+					distance += dimension - Long.numberOfTrailingZeros(row);
+				}
+			} else {
+				distance += Long.bitCount(vsliders[i]) * (i + 1);
+			}
+		}
+		return distance;
+	}
+
+	int getPossibleMoves(boolean horizontal, int[] moves) {
+		int count = 0;
+
+		if (horizontal) {
+			for (int i = dimension - 1; i >= 0; i--) {
+				long row = hsliders[i];
+				if (row == 0) {
+					continue;
+				}
+				long empty = empty(i);
+				long right = row & (empty >>> 1 | lastColumn);
+				long down = i < dimension - 1 ? row & empty(i + 1) : 0;
+				long up = i > 0 ? row & empty(i - 1) : 0;
+				for (long movable = right | down | up; movable != 0;) {
+					int j = 63 - Long.numberOfLeadingZeros(movable);
+					long bit = 1L << j;
+					movable ^= bit;
+					int square = i << 6 | j;
+					if ((right & bit) != 0) {
+						moves[count++] = square << 2 | RIGHT;
+					}
+					if ((down & bit) != 0) {
+						moves[count++] = square << 2 | DOWN;
+					}
+					if ((up & bit) != 0) {
+						moves[count++] = square << 2 | UP;
+					}
+				}
+			}
+		} else {
+			for (int i = 0; i < dimension; i++) {
+				long row = vsliders[i];
+				if (row == 0) {
+					continue;
+				}
+				long empty = empty(i);
+				// a vertical slider on the top row can always leave the board
+				long up = i > 0 ? row & empty(i - 1) : row;
+				long left = row & empty << 1;
+				long right = row & empty >>> 1;
+				for (long movable = up | left | right; movable != 0;) {
+					int j = 63 - Long.numberOfLeadingZeros(movable);
+					long bit = 1L << j;
+					movable ^= bit;
+					int square = i << 6 | j;
+					if ((up & bit) != 0) {
+						moves[count++] = square << 2 | UP;
+					}
+					if ((left & bit) != 0) {
+						moves[count++] = square << 2 | LEFT;
+					}
+					if ((right & bit) != 0) {
+						moves[count++] = square << 2 | RIGHT;
+					}
+				}
+			}
+		}
+
+		return count;
+	}
+
+	void makeMove(int move) {
+		int square = move >>> 2;
+		int i = square >>> 6, j = square & 63;
+
+		switch (move & 3) {
+		case UP:
+			if ((hsliders[i] >>> j & 1) != 0) {
+				toggleH(i, j);
+				toggleH(i - 1, j);
+			} else {
+				toggleV(i, j);
+				// a vertical slider on the top row leaves the board
+				if (i > 0) {
+					toggleV(i - 1, j);
+				}
+			}
+			break;
+		case DOWN:
+			toggleH(i, j);
+			toggleH(i + 1, j);
+			break;
+		case RIGHT:
+			if ((hsliders[i] >>> j & 1) != 0) {
+				toggleH(i, j);
+				// a horizontal slider in the last column leaves the board
+				if (j < dimension - 1) {
+					toggleH(i, j + 1);
+				}
+			} else {
+				toggleV(i, j);
+				toggleV(i, j + 1);
+			}
+			break;
+		case LEFT:
+			toggleV(i, j);
+			toggleV(i, j - 1);
+			break;
+		}
+	}
+
+	void undoMove(int move) {
+		int square = move >>> 2;
+		int i = square >>> 6, j = square & 63;
+
+		switch (move & 3) {
+		case UP:
+			if (i == 0) {
+				toggleV(i, j);
+			} else if ((hsliders[i - 1] >>> j & 1) != 0) {
+				toggleH(i, j);
+				toggleH(i - 1, j);
+			} else {
+				toggleV(i, j);
+				toggleV(i - 1, j);
+			}
+			break;
+		case DOWN:
+			toggleH(i, j);
+			toggleH(i + 1, j);
+			break;
+		case RIGHT:
+			if (j == dimension - 1) {
+				toggleH(i, j);
+			} else if ((hsliders[i] >>> j + 1 & 1) != 0) {
+				toggleH(i, j);
+				toggleH(i, j + 1);
+			} else {
+				toggleV(i, j);
+				toggleV(i, j + 1);
+			}
+			break;
+		case LEFT:
+			toggleV(i, j);
+			toggleV(i, j - 1);
+			break;
+		}
+	}
+}
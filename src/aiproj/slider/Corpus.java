@@ -0,0 +1,65 @@
+package aiproj.slider;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Corpus of starting boards, so that benchmarks and tournaments can replay
+ * exactly the same games. A corpus file holds any number of boards, each a
+ * line with its dimension N followed by N lines of the board in the
+ * Referee's text format; blank lines and lines starting with '#' are ignored.
+ *
+ * Run this class on the command line using a command like:
+ * java aiproj.slider.Corpus corpus.txt 5 6 7 8
+ * to write every distinct starting layout the Referee can deal for each N
+ */
+public class Corpus {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java aiproj.slider.Corpus file N [N ...]");
+			System.exit(1);
+		}
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(args[0])))) {
+			out.println("# every distinct Slider starting layout, by dimension");
+			for (int k = 1; k < args.length; k++) {
+				int n = Integer.parseInt(args[k]);
+				List<String> layouts = Referee.layouts(n);
+				for (String layout : layouts) {
+					out.println(n);
+					out.print(layout);
+					out.println();
+				}
+				System.err.println("N=" + n + ": " + layouts.size() + " layouts");
+			}
+		}
+	}
+
+	/** The boards of dimension n in a corpus file, in order, as text */
+	public static List<String> read(String file, int n) throws IOException {
+		List<String> layouts = new ArrayList<String>();
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				int dimension = Integer.parseInt(line);
+				StringBuilder board = new StringBuilder(2 * dimension * dimension);
+				for (int k = 0; k < dimension; k++) {
+					line = in.readLine();
+					if (line == null) {
+						throw new IOException(file + " ends in the middle of a board");
+					}
+					board.append(line.trim()).append('\n');
+				}
+				if (dimension == n) {
+					layouts.add(board.toString());
+				}
+			}
+		}
+		return layouts;
+	}
+}
@@ -9,12 +9,28 @@
  */
 package aiproj.slider;
 
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.*;
+
 /** 
  * Referee class: Driver for a game of Slider
  * Run this class on the command line using a command like:
  * java aiproj.slider.Referee 6 your.package.PlayerName your.package.PlayerName
  * to play your program PlayerName against itself on a board of size N=6
  * See the specification for more detialed instructions
+ *
+ * Or, to compare two players, run a tournament of many games at once:
+ * java aiproj.slider.Referee -games 1000 6 first.PlayerA second.PlayerB
+ * Add -headless to skip rendering and print only moves and results, -seed to
+ * replay the same boards, or -corpus to play every layout in a corpus file
+ * (see Corpus). -csv and -json export the CPU and wall time of every move
  */
 public class Referee {
 
@@ -25,89 +41,509 @@ public class Referee {
 		 * first, read and validate command line options
 		 */
 		Options options = new Options(args);
-		
+
+		// many games at once? that's a tournament
+		if (options.games > 0) {
+			new Tournament(options).run();
+			return;
+		}
+
 
 		/* * * *
-		 * then, set up the board and initialise the players
+		 * then, set up the board and the game
 		 */
 
 		// create a new board
-		Board board = new Board(options.dimension);
-		
-		// set up timer and time array for profiling
-		CPUTimer timer = new CPUTimer(); // nanosecond CPU usage timer
-		long[] times = new long[]{0, 0}; // cumulative time spent by each player
-		
-		// and initialise the players
-		SliderPlayer[] players = new SliderPlayer[2];
-		try {
-			timer.start();
-			players[Player.H] = (SliderPlayer)options.playerH.newInstance();
-			players[Player.H].init(options.dimension, board.toString(), 'H');
-			times[Player.H] += timer.clock();
+		Board board = new Board(options.dimension, new Random(options.seed));
 
-			timer.start();
-			players[Player.V] = (SliderPlayer)options.playerV.newInstance();
-			players[Player.V].init(options.dimension, board.toString(), 'V');
-			times[Player.V] += timer.clock();	
+		// without rendering, moves and results go to an asynchronous sink
+		Sink sink = options.headless ? new Sink() : null;
+		Game game = options.headless
+			? new Game(board, options.playerH, options.playerV, false, 0, 0, sink, "")
+			: new Game(board, options.playerH, options.playerV, true, options.delay, 0, null, null);
+
+
+		/* * * *
+		 * now, play the game!
+		 */
+
+		// the seed first, so even an aborted game can be replayed
+		if (!options.headless) {
+			System.out.println("seed: " + options.seed);
+		}
+
+		try {
+			game.play();
 		} catch (IllegalAccessException | InstantiationException e) {
 			System.err.println("player instantiation error: " + e.getMessage());
 			System.exit(1);
 		}
-		
+
+		TimingsReport report = new TimingsReport(options);
+		report.game(0, game, new Class<?>[]{options.playerH, options.playerV}, Player.H);
+		report.finish(new Class<?>[]{options.playerH, options.playerV}, game.timings);
+
 
 		/* * * *
-		 * now, play the game!
+		 * game over! finally, display the results
 		 */
 
-		int turn = Player.H;
-		Move previousMove = null;
-		String message = null;
-		
-		render(board);
+		if (options.headless) {
+			sink.send("seed: " + options.seed);
+			sink.send(game.result());
+			sink.send("times: horizontal ~" + game.times[Player.H]/1000000
+				+ "ms, vertical ~" + game.times[Player.V]/1000000 + "ms");
+			sink.send("move times: horizontal " + game.timings[Player.H]);
+			sink.send("move times: vertical " + game.timings[Player.V]);
+			sink.close();
+		} else if(board.finished()) {
+			System.out.println("winner: " + board.winner());
+			System.out.println("times:");
+			System.out.println(" horizontal ~"+ game.times[Player.H]/1000000 +"ms");
+			System.out.println(" vertical   ~"+ game.times[Player.V]/1000000 +"ms");
+			System.out.println("move times:");
+			System.out.println(" horizontal " + game.timings[Player.H]);
+			System.out.println(" vertical   " + game.timings[Player.V]);
+		} else {
+			System.out.println("illegal move: "
+				+ (game.turn==Player.H ? "horizontal" : "vertical"));
+			System.out.println(" " + game.message);
+			System.out.println(" (move: " + game.previousMove + ")");
+		}
+	}
 
-		// game loop
-		while (!board.finished()) {
+	/**
+	 * One game of Slider between two player classes, played on the calling
+	 * thread: the game's CPU timer measures each player's time on that thread
+	 * only, so many games can be played at once on different threads
+	 */
+	private static class Game {
+
+		private final Board board;
+		private final Class<?> playerH, playerV;
+		private final boolean render; // render the board after every move?
+		private final int delay;	  // time in ms to delay between turns
+		private final int limit;	  // most moves to play, or 0 for no limit
+		private final Sink moveSink;  // where to send each move, if anywhere
+		private final String label;	  // the start of each move's line
+
+		// the outcome: time spent by each player, the last move and whose
+		// turn it was, and a message if that move was illegal
+		public final long[] times = new long[]{0, 0};
+		public final Timings[] timings = new Timings[]{new Timings(), new Timings()};
+		public int turn = Player.H, moves = 0;
+		public Move previousMove = null;
+		public String message = null;
+
+		public Game(Board board, Class<?> playerH, Class<?> playerV,
+				boolean render, int delay, int limit, Sink moveSink, String label) {
+			this.board = board;
+			this.playerH = playerH;
+			this.playerV = playerV;
+			this.render = render;
+			this.delay = delay;
+			this.limit = limit;
+			this.moveSink = moveSink;
+			this.label = label;
+		}
+
+		/** Initialise the players, and play until the game ends */
+		public void play() throws IllegalAccessException, InstantiationException {
 
-			// delay
-			sleep(options.delay);
+			// set up timer for profiling
+			CPUTimer timer = new CPUTimer(); // nanosecond CPU usage timer
 
-			// calculate and time move
+			// initialise the players
+			SliderPlayer[] players = new SliderPlayer[2];
 			timer.start();
-			players[turn].update(previousMove);
-			previousMove = players[turn].move();
-			times[turn] += timer.clock();
+			players[Player.H] = (SliderPlayer)playerH.newInstance();
+			players[Player.H].init(board.n, board.toString(), 'H');
+			times[Player.H] += timer.clock();
 
-			// validate and perform move
-			try {
-				board.move(previousMove, Player.pieces[turn]);
-			} catch (IllegalMoveException e) {
-				// exit game due to violation, leading to loss for players[turn]
-				message = e.getMessage();
-				break;
+			timer.start();
+			players[Player.V] = (SliderPlayer)playerV.newInstance();
+			players[Player.V].init(board.n, board.toString(), 'V');
+			times[Player.V] += timer.clock();
+
+			if (render) {
+				render(board);
 			}
 
-			// other player's turn next
-			turn = Player.other(turn);
-			
-			render(board);
+			// game loop
+			while (!board.finished() && (limit == 0 || moves < limit)) {
+
+				// delay
+				sleep(delay);
+
+				// calculate and time move
+				long wall = System.nanoTime();
+				timer.start();
+				players[turn].update(previousMove);
+				previousMove = players[turn].move();
+				long cpu = timer.clock();
+				times[turn] += cpu;
+				timings[turn].add(cpu, System.nanoTime() - wall);
+
+				// validate and perform move
+				try {
+					board.move(previousMove, Player.pieces[turn]);
+				} catch (IllegalMoveException e) {
+					// exit game due to violation, leading to loss for players[turn]
+					message = e.getMessage();
+					return;
+				}
+				moves++;
+				if (moveSink != null) {
+					moveSink.send(label + (turn == Player.H ? "H " : "V ")
+						+ (previousMove == null ? "pass" : previousMove));
+				}
+
+				// other player's turn next
+				turn = Player.other(turn);
+
+				if (render) {
+					render(board);
+				}
+			}
 		}
-		
 
-		/* * * *
-		 * game over! finally, display the results
+		/**
+		 * The winning player (Player.H or Player.V), or -1 for a tie or a
+		 * game cut short by the move limit
 		 */
+		public int winner() {
+			if (message != null) {
+				// an illegal move loses the game
+				return Player.other(turn);
+			} else if (board.hsliders == 0) {
+				return Player.H;
+			} else if (board.vsliders == 0) {
+				return Player.V;
+			} else {
+				return -1;
+			}
+		}
 
-		if(board.finished()) {
-			System.out.println("winner: " + board.winner());
-			System.out.println("times:");
-			System.out.println(" horizontal ~"+ times[Player.H]/1000000 +"ms");
-			System.out.println(" vertical   ~"+ times[Player.V]/1000000 +"ms");
-		} else {
-			System.out.println("illegal move: "
-				+ (turn==Player.H ? "horizontal" : "vertical"));
-			System.out.println(" " + message);
-			System.out.println(" (move: " + previousMove + ")");
+		/** A one-line description of how the game ended */
+		public String result() {
+			if (message != null) {
+				return "illegal move: " + (turn==Player.H ? "horizontal" : "vertical")
+					+ " " + message + " (move: " + previousMove + ")";
+			} else if (board.finished()) {
+				return "winner: " + board.winner();
+			} else {
+				return "stopped after " + moves + " moves";
+			}
+		}
+	}
+
+	/**
+	 * Plays many games between two player classes at once, on a pool of
+	 * threads, and tallies their results. Games come in pairs on the same
+	 * board with colours swapped, each pair's board seeded from the
+	 * tournament's seed, or else taken in turn from a corpus of layouts, so a
+	 * tournament can be replayed exactly
+	 */
+	private static class Tournament {
+
+		private final Options options;
+		private final Class<?>[] players; // the two players, A and B
+		private final List<String> layouts; // the corpus, if any
+		private final Sink out = new Sink();
+
+		// tallies for players A and B
+		private final int[] wins = new int[2], losses = new int[2], draws = new int[2];
+		private final long[] times = new long[2]; // total nanoseconds
+		private final Timings[] timings = new Timings[]{new Timings(), new Timings()};
+		private final TimingsReport report;
+		private long moves = 0;
+
+		public Tournament(Options options) {
+			this.options = options;
+			this.players = new Class<?>[]{options.playerH, options.playerV};
+			List<String> layouts = null;
+			if (options.corpus != null) {
+				try {
+					layouts = Corpus.read(options.corpus, options.dimension);
+				} catch (IOException e) {
+					System.err.println("corpus error: " + e.getMessage());
+					System.exit(1);
+				}
+				if (layouts.isEmpty()) {
+					System.err.println("corpus error: no layouts for N="
+						+ options.dimension + " in " + options.corpus);
+					System.exit(1);
+				}
+			}
+			this.layouts = layouts;
+			this.report = new TimingsReport(options);
+		}
+
+		public void run() {
+			out.send("tournament: " + options.games + " games on N="
+				+ options.dimension + ", " + options.threads + " threads, "
+				+ (layouts != null ? "corpus " + options.corpus : "seed " + options.seed));
+			long start = System.nanoTime();
+
+			ExecutorService pool = Executors.newFixedThreadPool(options.threads);
+			List<Future<Game>> games = new ArrayList<Future<Game>>();
+			for (int g = 0; g < options.games; g++) {
+				final int a = g % 2; // A plays H in even games, V in odd ones
+				final int pair = g / 2;
+				final String label = "game " + g + ": ";
+				games.add(pool.submit(() -> {
+					Board board = layouts != null
+						? new Board(options.dimension, layouts.get(pair % layouts.size()))
+						: new Board(options.dimension, new Random(options.seed + pair));
+					Game game = new Game(board, players[a], players[1 - a], false, 0,
+						options.limit, options.headless ? out : null, label);
+					game.play();
+					return game;
+				}));
+			}
+
+			// tally results in the order the games were started
+			for (int g = 0; g < options.games; g++) {
+				try {
+					tally(g, games.get(g).get());
+				} catch (InterruptedException | ExecutionException e) {
+					System.err.println("game " + g + " failed: " + e.getCause());
+					System.exit(1);
+				}
+			}
+			pool.shutdown();
+
+			long wall = System.nanoTime() - start;
+			out.send("results:");
+			for (int p = 0; p < 2; p++) {
+				out.send(" " + players[p].getName() + ": " + wins[p]
+					+ " wins, " + losses[p] + " losses, " + draws[p] + " draws, ~"
+					+ times[p] / options.games / 1000000 + "ms per game");
+				out.send("   move times " + timings[p]);
+			}
+			out.send(" " + options.games + " games, " + moves
+				+ " moves in ~" + wall / 1000000 + "ms ("
+				+ (long) (options.games * 3.6e12 / wall) + " games/hour)");
+			out.close();
+			report.finish(players, timings);
+		}
+
+		private void tally(int g, Game game) {
+			int a = g % 2; // the colour player A played
+			int winner = game.winner();
+			for (int colour = 0; colour < 2; colour++) {
+				int p = colour == a ? 0 : 1;
+				if (winner == -1) {
+					draws[p]++;
+				} else if (winner == colour) {
+					wins[p]++;
+				} else {
+					losses[p]++;
+				}
+				times[p] += game.times[colour];
+				timings[p].addAll(game.timings[colour]);
+			}
+			moves += game.moves;
+			report.game(g, game, players, a);
+
+			String result = winner == -1 ? "draw"
+				: players[winner == a ? 0 : 1].getSimpleName() + " ("
+				+ (winner == Player.H ? "H" : "V") + ") wins";
+			out.send("game " + g + ": " + result + " in " + game.moves
+				+ " moves" + (game.message != null ? ", illegal move: " + game.message : ""));
+		}
+	}
+
+	/**
+	 * The CPU and wall-clock time of each of a player's moves (the update()
+	 * and move() calls together), in nanoseconds, in the order played
+	 */
+	private static class Timings {
+
+		private long[] cpu = new long[64], wall = new long[64];
+		private int count = 0;
+
+		public void add(long cpuTime, long wallTime) {
+			if (count == cpu.length) {
+				cpu = java.util.Arrays.copyOf(cpu, 2 * count);
+				wall = java.util.Arrays.copyOf(wall, 2 * count);
+			}
+			cpu[count] = cpuTime;
+			wall[count] = wallTime;
+			count++;
+		}
+
+		public void addAll(Timings timings) {
+			for (int k = 0; k < timings.count; k++) {
+				add(timings.cpu[k], timings.wall[k]);
+			}
+		}
+
+		/** the p-th percentile (nearest rank) of the CPU or wall times */
+		public long percentile(boolean wallTimes, double p) {
+			if (count == 0) {
+				return 0;
+			}
+			long[] sorted = java.util.Arrays.copyOf(wallTimes ? wall : cpu, count);
+			java.util.Arrays.sort(sorted);
+			return sorted[Math.max(0, (int) Math.ceil(p / 100 * count) - 1)];
+		}
+
+		/** percentiles of the move times, as CPU/wall milliseconds */
+		public String toString() {
+			StringBuilder s = new StringBuilder();
+			for (double p : PERCENTILES) {
+				s.append(p == 100 ? "max " : "p" + (int) p + " ");
+				s.append(String.format("%.1f/%.1f ", percentile(false, p) / 1e6, percentile(true, p) / 1e6));
+			}
+			return s.append("ms (cpu/wall, " + count + " moves)").toString();
+		}
+	}
+
+	/** The percentiles of move times reported, and 100 for the maximum */
+	private static final double[] PERCENTILES = {50, 90, 99, 100};
+
+	/**
+	 * Exports move times, if asked to: every move of every game as CSV
+	 * rows, and/or each player's percentiles and every game's per-move
+	 * times as JSON, all in nanoseconds
+	 */
+	private static class TimingsReport {
+
+		private PrintWriter csv, json;
+		private boolean firstGame = true;
+
+		public TimingsReport(Options options) {
+			try {
+				if (options.csv != null) {
+					csv = new PrintWriter(new BufferedWriter(new FileWriter(options.csv)));
+					csv.println("game,player,colour,move,cpu_ns,wall_ns");
+				}
+				if (options.json != null) {
+					json = new PrintWriter(new BufferedWriter(new FileWriter(options.json)));
+					json.print("{\"games\": [");
+				}
+			} catch (IOException e) {
+				System.err.println("can't export move times: " + e.getMessage());
+				System.exit(1);
+			}
+		}
+
+		/** add a game, in which players[a] played H and the other V */
+		public void game(int g, Game game, Class<?>[] players, int a) {
+			for (int colour = 0; colour < 2; colour++) {
+				String player = players[colour == Player.H ? a : 1 - a].getName();
+				Timings timings = game.timings[colour];
+				if (csv != null) {
+					for (int k = 0; k < timings.count; k++) {
+						csv.println(g + "," + player + "," + (colour == Player.H ? "H" : "V")
+							+ "," + k + "," + timings.cpu[k] + "," + timings.wall[k]);
+					}
+				}
+			}
+			if (json != null) {
+				json.print((firstGame ? "" : ",") + "\n  {\"game\": " + g
+					+ ", \"H\": \"" + players[a].getName()
+					+ "\", \"V\": \"" + players[1 - a].getName()
+					+ "\", \"winner\": \"" + (game.winner() == Player.H ? "H"
+						: game.winner() == Player.V ? "V" : "none") + "\""
+					+ ", \"cpu\": {\"H\": " + series(game.timings[Player.H].cpu, game.timings[Player.H].count)
+					+ ", \"V\": " + series(game.timings[Player.V].cpu, game.timings[Player.V].count)
+					+ "}, \"wall\": {\"H\": " + series(game.timings[Player.H].wall, game.timings[Player.H].count)
+					+ ", \"V\": " + series(game.timings[Player.V].wall, game.timings[Player.V].count) + "}}");
+				firstGame = false;
+			}
+		}
+
+		/** add each player's percentiles over all their moves, and finish */
+		public void finish(Class<?>[] players, Timings[] timings) {
+			if (csv != null) {
+				csv.close();
+			}
+			if (json != null) {
+				json.print("\n], \"players\": [");
+				for (int p = 0; p < 2; p++) {
+					json.print((p == 0 ? "" : ",") + "\n  {\"player\": \"" + players[p].getName()
+						+ "\", \"moves\": " + timings[p].count
+						+ ", \"cpu\": " + percentiles(timings[p], false)
+						+ ", \"wall\": " + percentiles(timings[p], true) + "}");
+				}
+				json.println("\n]}");
+				json.close();
+			}
+		}
+
+		private static String series(long[] times, int count) {
+			StringBuilder s = new StringBuilder("[");
+			for (int k = 0; k < count; k++) {
+				s.append(k == 0 ? "" : ", ").append(times[k]);
+			}
+			return s.append("]").toString();
+		}
+
+		private static String percentiles(Timings timings, boolean wall) {
+			StringBuilder s = new StringBuilder("{");
+			for (double p : PERCENTILES) {
+				s.append(p == 50 ? "" : ", ").append(p == 100 ? "\"max\"" : "\"p" + (int) p + "\"")
+					.append(": ").append(timings.percentile(wall, p));
+			}
+			return s.append("}").toString();
+		}
+	}
+
+	/**
+	 * Asynchronous buffered output: lines sent from any thread are queued
+	 * and written to standard output in batches by a background thread, so
+	 * the threads playing games never wait on the console
+	 */
+	private static class Sink {
+
+		private static final String END = new String("end"); // compared by identity
+
+		private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+		private final Thread writer = new Thread(this::write, "Referee output");
+
+		public Sink() {
+			writer.start();
+		}
+
+		/** Queue a line to print */
+		public void send(String line) {
+			lines.add(line);
+		}
+
+		/** Print every line sent so far, and stop */
+		public void close() {
+			lines.add(END);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				// if interrupted, not much we can do. some output may be lost
+			}
+		}
+
+		private void write() {
+			PrintWriter out = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(System.out), 1 << 16));
+			List<String> batch = new ArrayList<String>();
+			try {
+				while (true) {
+					batch.add(lines.take());
+					lines.drainTo(batch);
+					for (String line : batch) {
+						if (line == END) {
+							return;
+						}
+						out.println(line);
+					}
+					batch.clear();
+					out.flush();
+				}
+			} catch (InterruptedException e) {
+				// if interrupted, stop writing
+			} finally {
+				out.flush();
+			}
 		}
 	}
 
@@ -131,11 +567,59 @@ public class Referee {
 	private static class Options {
 
 		public final int delay;				 // time in ms to delay rendering
-		public final int dimension;			 // dimension of board to play on
-		public final Class playerH, playerV; // class names of players to play
+		public final int dimension;			 // dimension of board to use
+		public final Class<?> playerH, playerV; // class names of players to play
+
+		// tournament options
+		public final int games;				 // number of games, or 0 for one game
+		public final int threads;			 // games to play at once
+		public final long seed;				 // seed for the games' boards
+		public final String corpus;			 // file of boards to play instead
+		public final String csv, json;		 // files to export move times to
+		public final int limit;				 // most moves per game, then a draw
+		public final boolean headless;		 // print only moves and results?
 
 		public Options(String[] args) {
 
+			// read any named options first
+			int games = 0, threads = Runtime.getRuntime().availableProcessors();
+			long seed = System.nanoTime();
+			int limit = 1000;
+			String corpus = null, csv = null, json = null;
+			boolean headless = false;
+			int k = 0;
+			while (k < args.length && args[k].startsWith("-")) {
+				if (args[k].equals("-headless")) {
+					headless = true;
+					k++;
+					continue;
+				}
+				if (k + 1 == args.length) {
+					printUsageInfoAndExit();
+				}
+				String value = args[k + 1];
+				switch (args[k]) {
+					case "-games":	 games = Integer.parseInt(value); break;
+					case "-threads": threads = Integer.parseInt(value); break;
+					case "-seed":	 seed = Long.parseLong(value); break;
+					case "-limit":	 limit = Integer.parseInt(value); break;
+					case "-corpus":	 corpus = value; break;
+					case "-csv":	 csv = value; break;
+					case "-json":	 json = value; break;
+					default:		 printUsageInfoAndExit();
+				}
+				k += 2;
+			}
+			this.games = games;
+			this.threads = Math.max(1, threads);
+			this.seed = seed;
+			this.limit = limit;
+			this.corpus = corpus;
+			this.csv = csv;
+			this.json = json;
+			this.headless = headless;
+			args = java.util.Arrays.copyOfRange(args, k, args.length);
+
 			// are there enough arguments?
 			if (args.length < 3) {
 				printUsageInfoAndExit();
@@ -158,8 +642,8 @@ public class Referee {
 			// attempt to locate classes provided by name
 			String playerHClassName = args[1];
 			String playerVClassName = args[2];
-			Class playerH = null;
-			Class playerV = null;
+			Class<?> playerH = null;
+			Class<?> playerV = null;
 			try {
 				playerH = Class.forName(playerHClassName);
 				playerV = Class.forName(playerVClassName);
@@ -172,15 +656,74 @@ public class Referee {
 		}
 
 		static void printUsageInfoAndExit() {
-			System.err.println("usage: java Referee N playerH playerV [delay]");
+			System.err.println("usage: java Referee [-headless] [options] N playerH playerV [delay]");
 			System.err.println("       N - dimension of board to use (N > 3)");
 			System.err.println(" playerH - fully qualified name of H player");
 			System.err.println(" playerV - fully qualified name of V player");
 			System.err.println("   delay - (optional) ms delay between turns");
+			System.err.println("-headless    - print only moves and results, not the board");
+			System.err.println("  -seed S    - seed for the boards (default: the time)");
+			System.err.println("  -csv F     - export every move's CPU and wall time to F");
+			System.err.println("  -json F    - export move time percentiles and series to F");
+			System.err.println("options, for a tournament between playerH and playerV:");
+			System.err.println("  -games M   - play M games, alternating colours");
+			System.err.println("  -threads T - play T games at once (default: one per core)");
+			System.err.println("  -limit L   - draw games after L moves (default: 1000)");
+			System.err.println("  -corpus F  - play the layouts in file F instead (see Corpus)");
 			System.exit(1);
 		}
 	}
 
+	/**
+	 * Every distinct starting board of dimension n the Referee can deal, as
+	 * text, starting with the one with no blocks
+	 */
+	public static List<String> layouts(int n) {
+		return Board.layouts(n);
+	}
+
+	/** The starting board of dimension n with no blocks, as text */
+	public static String startingBoard(int n) {
+		return new Board(n).toString();
+	}
+
+	/**
+	 * Perft by the Referee's own rules: for each legal move (or the pass) of
+	 * turn ('H' or 'V') on a board given as text, the number of positions
+	 * reachable from it in exactly depth moves, passes included. A game that
+	 * ends sooner reaches nothing. For checking players' move generators,
+	 * which should find the same moves and counts; it tries every move on a
+	 * copy of the board, so it is exact rather than fast
+	 */
+	public static Map<String, Long> divide(int n, String text, char turn, int depth) {
+		Board board = new Board(n, text);
+		int player = turn == 'H' ? Player.H : Player.V;
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (Move move : board.legalMoves(player)) {
+			Board next = new Board(board);
+			next.tryMove(move, player);
+			counts.put(move == null ? "pass" : move.toString(),
+				perft(next, Player.other(player), depth - 1));
+		}
+		return counts;
+	}
+
+	/** The number of positions reachable in exactly depth moves, as divide() */
+	private static long perft(Board board, int turn, int depth) {
+		if (depth == 0) {
+			return 1;
+		} else if (board.finished()) {
+			return 0;
+		}
+		long count = 0;
+		for (Move move : board.legalMoves(turn)) {
+			Board next = new Board(board);
+			next.tryMove(move, turn);
+			count += perft(next, Player.other(turn), depth - 1);
+		}
+		return count;
+	}
+
 	/** Collection of game helper functions and constants */
 	private static interface Player {
 		static final int H = 0, V = 1;
@@ -195,13 +738,31 @@ public class Referee {
 	 */
 	private static class Board {
 		
-		private static java.util.Random rng = new java.util.Random();
-
 		private Piece[][] grid;
 		private int hsliders = 0, vsliders = 0, passes = 0;
 		private final int n;
 
-		public Board(int n) {
+		/**
+		 * where each side's pieces are, as squares i*n + j, kept up to date
+		 * by move(), and where on its side's list the piece on each square is
+		 */
+		private int[][] pieces;
+		private int[][] slots;
+
+		/** whether the piece on each square can move, and how many of each side's can */
+		private boolean[][] movable;
+		private int[] movables = new int[2];
+
+		/** the squares whose pieces' moves depend on a square: itself, and its neighbours */
+		private static final int[] AROUND_I = {0, 1, -1, 0, 0}, AROUND_J = {0, 0, 0, 1, -1};
+
+		/** a starting board with blocks placed using the given random numbers */
+		public Board(int n, Random rng) {
+			this(n, randomBlocks(n, rng));
+		}
+
+		/** a starting board with blocks at positions {i1, j1, i2, j2, ...} */
+		public Board(int n, int... blocks) {
 			this.n = n;
 			this.grid = new Piece[n][n];
 
@@ -225,27 +786,119 @@ public class Referee {
 			}
 
 			// add blocked positions
+			for (int k = 0; k + 1 < blocks.length; k += 2) {
+				grid[blocks[k]][blocks[k+1]] = Piece.BLOCK;
+			}
+			index();
+		}
+
+		/** a copy of another board */
+		public Board(Board board) {
+			this.n = board.n;
+			this.grid = new Piece[n][];
+			for (int i = 0; i < n; i++) {
+				this.grid[i] = board.grid[i].clone();
+			}
+			this.hsliders = board.hsliders;
+			this.vsliders = board.vsliders;
+			this.passes = board.passes;
+			this.pieces = new int[][]{board.pieces[Player.H].clone(), board.pieces[Player.V].clone()};
+			this.slots = new int[n][];
+			this.movable = new boolean[n][];
+			for (int i = 0; i < n; i++) {
+				this.slots[i] = board.slots[i].clone();
+				this.movable[i] = board.movable[i].clone();
+			}
+			this.movables = board.movables.clone();
+		}
+
+		/** a board read from its text representation (see toString()) */
+		public Board(int n, String text) {
+			this.n = n;
+			this.grid = new Piece[n][n];
+			int index = 0;
+			for (int j = n-1; j >= 0; j--) {
+				for (int i = 0; i < n; i++) {
+					// skip to the next symbol
+					while (new String(SYMBOLS).indexOf(text.charAt(index)) < 0) {
+						index++;
+					}
+					switch (text.charAt(index++)) {
+						case 'B': grid[i][j] = Piece.BLOCK; break;
+						case 'H': grid[i][j] = Piece.HSLIDER; hsliders++; break;
+						case 'V': grid[i][j] = Piece.VSLIDER; vsliders++; break;
+						default:  grid[i][j] = Piece.BLANK; break;
+					}
+				}
+			}
+			index();
+		}
+
+		/** list where the pieces on the grid are, and which of them can move */
+		private void index() {
+			pieces = new int[][]{new int[hsliders], new int[vsliders]};
+			slots = new int[n][n];
+			movable = new boolean[n][n];
+			int[] count = new int[2];
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					if (grid[i][j] == Piece.HSLIDER || grid[i][j] == Piece.VSLIDER) {
+						int side = side(grid[i][j]);
+						slots[i][j] = count[side];
+						pieces[side][count[side]++] = i*n + j;
+					}
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					mark(i, j);
+				}
+			}
+		}
+
+		/** the player whose piece this is */
+		private static int side(Piece piece) {
+			return piece == Piece.HSLIDER ? Player.H : Player.V;
+		}
+
+		/** choose the blocked positions of a random starting board */
+		private static int[] randomBlocks(int n, Random rng) {
 			int nblocked = rng.nextInt(3);
 			if (nblocked == 0) {
 				// no blocked positions
+				return new int[]{};
 			} else {
 				// one or two blocked positions:
 				int i = 1 + rng.nextInt(n-2);
 				int j = 1 + rng.nextInt(n-2);
 				if (nblocked == 1) {
-					grid[i][j] = Piece.BLOCK;
-				} else if (nblocked == 2) {
-					if (rng.nextBoolean()) {
-						grid[i][i] = Piece.BLOCK;
-						grid[j][j] = Piece.BLOCK;
-					} else {
-						grid[i][j] = Piece.BLOCK;
-						grid[j][i] = Piece.BLOCK;
-					}
+					return new int[]{i, j};
+				} else if (rng.nextBoolean()) {
+					return new int[]{i, i, j, j};
+				} else {
+					return new int[]{i, j, j, i};
 				}
 			}
 		}
 
+		/**
+		 * every distinct starting board randomBlocks() can choose, as text:
+		 * no blocks, one block, or two blocks placed on the diagonal or
+		 * mirrored across it
+		 */
+		public static List<String> layouts(int n) {
+			Set<String> layouts = new LinkedHashSet<String>();
+			layouts.add(new Board(n).toString());
+			for (int i = 1; i < n-1; i++) {
+				for (int j = 1; j < n-1; j++) {
+					layouts.add(new Board(n, i, j).toString());
+					layouts.add(new Board(n, i, i, j, j).toString());
+					layouts.add(new Board(n, i, j, j, i).toString());
+				}
+			}
+			return new ArrayList<String>(layouts);
+		}
+
 		/** represent a board as text for rendering */
 		private static final char[] SYMBOLS = {'+', 'B', 'H', 'V'};
 		public String toString(){
@@ -266,13 +919,9 @@ public class Referee {
 			// detect null move (pass)
 			if (move == null) {
 				// we better just check that there are really no legal moves
-				for (int i = 0; i < n; i++) {
-					for (int j = 0; j < n; j++) {
-						if (grid[i][j] == turn && canMove(i, j)) {
-							throw new IllegalMoveException(
-									"can't pass, moves remain!");
-						}
-					}
+				if (movables[side(turn)] > 0) {
+					throw new IllegalMoveException(
+							"can't pass, moves remain!");
 				}
 
 				// if we make it here, there were no legal moves: pass is legal
@@ -310,14 +959,12 @@ public class Referee {
 			}
 
 			// are we advancing a piece off the board?
-			if (piece == Piece.HSLIDER && toi == n) {
+			if ((piece == Piece.HSLIDER && toi == n)
+				|| (piece == Piece.VSLIDER && toj == n)) {
+				unmark(move.i, move.j);
 				grid[move.i][move.j] = Piece.BLANK;
-				hsliders--;
-				return;
-
-			} else if (piece == Piece.VSLIDER && toj == n){
-				grid[move.i][move.j] = Piece.BLANK;
-				vsliders--;
+				remove(move.i, move.j, side(piece));
+				mark(move.i, move.j);
 				return;
 			}
 
@@ -332,11 +979,101 @@ public class Referee {
 			}
 
 			// no? all good? alright, let's make the move!
+			unmark(move.i, move.j);
+			unmark(toi, toj);
 			grid[move.i][move.j] = Piece.BLANK;
 			grid[toi][toj] = piece;
+			int slot = slots[move.i][move.j];
+			slots[toi][toj] = slot;
+			pieces[side(piece)][slot] = toi*n + toj;
+			mark(move.i, move.j);
+			mark(toi, toj);
 			return;
 		}
 
+		/** take the piece on (i, j) off its side's list, which moves the list's last piece into its slot */
+		private void remove(int i, int j, int side) {
+			int last;
+			if (side == Player.H) {
+				last = pieces[side][--hsliders];
+			} else {
+				last = pieces[side][--vsliders];
+			}
+			int slot = slots[i][j];
+			pieces[side][slot] = last;
+			slots[last / n][last % n] = slot;
+		}
+
+		/**
+		 * before (i, j) changes, stop counting the pieces on and around it as
+		 * movable; mark() counts them again afterwards, if they still are
+		 */
+		private void unmark(int i, int j) {
+			for (int k = 0; k < AROUND_I.length; k++) {
+				int ai = i + AROUND_I[k], aj = j + AROUND_J[k];
+				if (ai >= 0 && ai < n && aj >= 0 && aj < n && movable[ai][aj]) {
+					movable[ai][aj] = false;
+					movables[side(grid[ai][aj])]--;
+				}
+			}
+		}
+
+		/** after (i, j) changes, count the pieces on and around it that can move */
+		private void mark(int i, int j) {
+			for (int k = 0; k < AROUND_I.length; k++) {
+				int ai = i + AROUND_I[k], aj = j + AROUND_J[k];
+				if (ai >= 0 && ai < n && aj >= 0 && aj < n && !movable[ai][aj] && canMove(ai, aj)) {
+					movable[ai][aj] = true;
+					movables[side(grid[ai][aj])]++;
+				}
+			}
+		}
+
+		/**
+		 * every move that move() accepts for a player: each of its movable
+		 * pieces in each open direction, or else just the pass (null)
+		 */
+		public List<Move> legalMoves(int player) {
+			List<Move> moves = new ArrayList<Move>();
+			int count = player == Player.H ? hsliders : vsliders;
+			for (int k = 0; k < count; k++) {
+				int i = pieces[player][k] / n, j = pieces[player][k] % n;
+				if (!movable[i][j]) {
+					continue;
+				}
+				for (Move.Direction d : Move.Direction.values()) {
+					if (isOpen(i, j, d)) {
+						moves.add(new Move(i, j, d));
+					}
+				}
+			}
+			if (moves.isEmpty()) {
+				moves.add(null);
+			}
+			return moves;
+		}
+
+		/** whether the slider on (i, j) may move in direction d, as move() decides */
+		private boolean isOpen(int i, int j, Move.Direction d) {
+			boolean horizontal = grid[i][j] == Piece.HSLIDER;
+			switch (d) {
+				case RIGHT: return i+1 == n ? horizontal : grid[i+1][j] == Piece.BLANK;
+				case UP:    return j+1 == n ? !horizontal : grid[i][j+1] == Piece.BLANK;
+				case LEFT:  return !horizontal && i > 0 && grid[i-1][j] == Piece.BLANK;
+				default:    return horizontal && j > 0 && grid[i][j-1] == Piece.BLANK;
+			}
+		}
+
+		/** make a move, if it's legal, and say whether it was */
+		private boolean tryMove(Move move, int player) {
+			try {
+				move(move, Player.pieces[player]);
+				return true;
+			} catch (IllegalMoveException e) {
+				return false;
+			}
+		}
+
 		private boolean canMove(int i, int j) {
 			if (grid[i][j] == Piece.HSLIDER) {
 				// for HSLIDERs, check right, up, and down